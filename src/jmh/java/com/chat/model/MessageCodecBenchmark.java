@@ -0,0 +1,56 @@
+package com.chat.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+//Кодирование и разбор сообщений: Message.toJson/fromJson и двоичный протокол
+//Скорость выделения памяти видна с профилировщиком gc (включен в задаче jmh)
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    @Param({"16", "256"})
+    private int contentLength;
+
+    private Message message;
+    private String json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() {
+        StringBuilder content = new StringBuilder();
+        while (content.length() < contentLength) {
+            content.append("Привет, world! ");
+        }
+        message = new Message(Message.MessageType.MESSAGE, "alice",
+                content.substring(0, contentLength), "2026-01-11 23:10:00");
+        json = message.toJson();
+        binary = BinaryCodec.encode(message);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return message.toJson();
+    }
+
+    @Benchmark
+    public Message fromJson() {
+        return Message.fromJson(json);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return BinaryCodec.encode(message);
+    }
+
+    @Benchmark
+    public Message binaryDecode() {
+        return BinaryCodec.decode(binary, BinaryCodec.HEADER_SIZE, binary.length - BinaryCodec.HEADER_SIZE);
+    }
+}
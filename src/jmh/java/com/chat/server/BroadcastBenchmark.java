@@ -0,0 +1,52 @@
+package com.chat.server;
+
+import com.chat.model.Message;
+import com.chat.util.ChatLogger;
+import com.chat.util.ConfigLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+//Рассылка ClientPool.broadcastMessage на 10/1k/10k клиентов
+//Клиенты - настоящие ClientHandler без сокета: кадр проходит исходящую очередь
+//и сразу выбирается писателем, в сокет ничего не пишется
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int clients;
+
+    private ClientPool clientPool;
+    private Message message;
+    private File logFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        logFile = File.createTempFile("broadcast-benchmark", ".log");
+        ChatLogger logger = new ChatLogger(logFile.getPath());
+        clientPool = new ClientPool();
+        ServerContext context = new ServerContext(new ConfigLoader(), logger, clientPool, null);
+        for (int i = 0; i < clients; i++) {
+            clientPool.addClient("user" + i, new ClientHandler(null, context));
+        }
+        message = new Message(Message.MessageType.MESSAGE, "alice", "Hello everyone in the room");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        clientPool.clear();
+        logFile.delete();
+    }
+
+    @Benchmark
+    public void broadcastMessage() {
+        clientPool.broadcastMessage(message);
+    }
+}
@@ -0,0 +1,45 @@
+package com.chat.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+//ChatLogger.log из нескольких потоков одновременно: синхронный и асинхронный режимы
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ChatLoggerBenchmark {
+
+    @Param({"sync", "async"})
+    private String mode;
+
+    private ChatLogger logger;
+    private File logFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        logFile = File.createTempFile("logger-benchmark", ".log");
+        if ("async".equals(mode)) {
+            logger = new ChatLogger(logFile.getPath(), 65536, ChatLogger.QueueFullPolicy.BLOCK, 512, 200);
+        } else {
+            logger = new ChatLogger(logFile.getPath());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        logger.close();
+        logFile.delete();
+    }
+
+    @Benchmark
+    public void logMessage() {
+        logger.logMessage("alice", "Hello everyone in the room");
+    }
+}
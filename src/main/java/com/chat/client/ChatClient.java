@@ -1,6 +1,9 @@
 package com.chat.client;
 
+import com.chat.model.BinaryCodec;
 import com.chat.model.Message;
+import com.chat.model.MessageReader;
+import com.chat.model.MessageWriter;
 import com.chat.util.ChatLogger;
 import com.chat.util.ConfigLoader;
 
@@ -14,6 +17,9 @@ public class ChatClient {
     private ChatLogger logger;
     private ConfigLoader config;
     private String username;
+    private MessageReader reader;
+    private MessageWriter writer;
+    private Message firstMessage;
     private ClientInputThread inputThread;
     private ClientReadThread readThread;
     private Thread inputThreadHandle;
@@ -21,7 +27,7 @@ public class ChatClient {
 
     public ChatClient() {
         this.config = new ConfigLoader();
-        this.logger = new ChatLogger(config.getFullLogPath());
+        this.logger = ChatLogger.create(config);
     }
 
 
@@ -39,14 +45,23 @@ public class ChatClient {
             logger.logConnected(username);
             System.out.println("Connected to server!");
 
-            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            reader = new MessageReader(socket.getInputStream());
+            writer = new MessageWriter(socket.getOutputStream());
+
             Message connectMsg = new Message(
                     Message.MessageType.CONNECT,
                     username,
                     "User has connected"
             );
-            out.println(connectMsg.toJson());
-            out.flush();
+            boolean wantBinary = "binary".equals(config.getClientProtocol());
+            if (wantBinary) {
+                connectMsg.setProtocol(BinaryCodec.PROTOCOL);
+            }
+            writer.write(connectMsg);
+
+            if (wantBinary) {
+                negotiateProtocol();
+            }
 
             startThreads();
 
@@ -60,6 +75,23 @@ public class ChatClient {
         }
     }
 
+    //Ждем первый ответ сервера: подтверждение двоичного протокола
+    //или обычный USER_LIST от сервера, который знает только JSON
+
+    private void negotiateProtocol() throws IOException {
+        Message reply = reader.read();
+        if (reply != null
+                && reply.getType() == Message.MessageType.SYSTEM
+                && BinaryCodec.PROTOCOL.equals(reply.getProtocol())) {
+            reader.setBinary(true);
+            writer.setBinary(true);
+            System.out.println("Using binary protocol");
+        } else {
+            // Сервер остался на JSON - ответ покажет поток чтения
+            firstMessage = reply;
+        }
+    }
+
     private String getUserInput(String prompt) {
         Scanner scanner = new Scanner(System.in);
         System.out.print(prompt);
@@ -74,27 +106,26 @@ public class ChatClient {
     }
 
     private void startThreads() {
-        try {
-            readThread = new ClientReadThread(
-                    socket.getInputStream(),
-                    logger
-            );
-            readThreadHandle = new Thread(readThread, "ClientReadThread");
-            readThreadHandle.setDaemon(false);
-            readThreadHandle.start();
-
-            inputThread = new ClientInputThread(
-                    socket.getOutputStream(),
-                    username,
-                    logger
-            );
-            inputThreadHandle = new Thread(inputThread, "ClientInputThread");
-            inputThreadHandle.setDaemon(false);
-            inputThreadHandle.start();
-
-        } catch (IOException e) {
-            System.err.println("Error starting threads: " + e.getMessage());
-        }
+        inputThread = new ClientInputThread(
+                writer,
+                username,
+                logger
+        );
+
+        readThread = new ClientReadThread(
+                reader,
+                firstMessage,
+                logger,
+                writer
+        );
+        readThread.setInputThread(inputThread);
+        readThreadHandle = new Thread(readThread, "ClientReadThread");
+        readThreadHandle.setDaemon(false);
+        readThreadHandle.start();
+
+        inputThreadHandle = new Thread(inputThread, "ClientInputThread");
+        inputThreadHandle.setDaemon(false);
+        inputThreadHandle.start();
     }
 
     private void waitForCompletion() {
@@ -132,6 +163,7 @@ public class ChatClient {
 
         System.out.println("Disconnected from server");
         logger.logSystem("Client disconnected");
+        logger.close();
     }
 
 
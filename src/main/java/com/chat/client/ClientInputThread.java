@@ -1,19 +1,26 @@
 package com.chat.client;
 
 import com.chat.model.Message;
+import com.chat.model.MessageWriter;
 import com.chat.util.ChatLogger;
 
 import java.io.*;
 
 
 public class ClientInputThread implements Runnable {
-    private PrintWriter out;
+    private MessageWriter out;
     private ChatLogger logger;
     private String username;
+    // Комната, в которую уходят сообщения (null - общая); меняет ее поток чтения по ответу сервера
+    private volatile String currentRoom;
     private volatile boolean isRunning = true;
 
     public ClientInputThread(OutputStream outputStream, String username, ChatLogger logger) {
-        this.out = new PrintWriter(outputStream, true);
+        this(new MessageWriter(outputStream), username, logger);
+    }
+
+    public ClientInputThread(MessageWriter writer, String username, ChatLogger logger) {
+        this.out = writer;
         this.username = username;
         this.logger = logger;
     }
@@ -25,6 +32,8 @@ public class ClientInputThread implements Runnable {
 
             System.out.println("\nWelcome to Network Chat!");
             System.out.println("Type your messages and press Enter to send");
+            System.out.println("Type '/join <room>' to enter a room, '/leave' to leave the current one");
+            System.out.println("Type '/users [from]' to list active users");
             System.out.println("Type '/exit' to leave the chat\n");
             System.out.print("> ");
 
@@ -40,14 +49,19 @@ public class ClientInputThread implements Runnable {
                     continue;
                 }
 
+                if (handleRoomCommand(userInput.trim()) || handleUsersCommand(userInput.trim())) {
+                    System.out.print("> ");
+                    continue;
+                }
+
                 Message message = new Message(
                         Message.MessageType.MESSAGE,
                         username,
                         userInput
                 );
+                message.setRoom(currentRoom);
 
-                out.println(message.toJson());
-                out.flush();
+                out.write(message);
 
                 logger.logMessage(username, userInput);
 
@@ -63,7 +77,63 @@ public class ClientInputThread implements Runnable {
         }
     }
 
-    private void handleExit() {
+    //Команда /users [from]: страница списка пользователей, начиная с номера from
+
+    private boolean handleUsersCommand(String input) throws IOException {
+        String[] parts = input.split("\\s+", 2);
+        if (!parts[0].equals("/users")) {
+            return false;
+        }
+        int from = 1;
+        if (parts.length == 2) {
+            try {
+                from = Math.max(1, Integer.parseInt(parts[1]));
+            } catch (NumberFormatException e) {
+                System.out.println("Usage: /users [from]");
+                return true;
+            }
+        }
+        out.write(new Message(Message.MessageType.USER_LIST, username, String.valueOf(from - 1)));
+        return true;
+    }
+
+    //Команды /join <room> и /leave [room]; true - команда обработана
+
+    private boolean handleRoomCommand(String input) throws IOException {
+        String[] parts = input.split("\\s+", 2);
+        Message.MessageType type;
+        if (parts[0].equals("/join") && parts.length == 2) {
+            type = Message.MessageType.JOIN;
+        } else if (parts[0].equals("/leave")) {
+            type = Message.MessageType.LEAVE;
+        } else {
+            return false;
+        }
+
+        String room = parts.length == 2 ? parts[1] : currentRoom;
+        Message message = new Message(type, username, input);
+        message.setRoom(room);
+        out.write(message);
+        return true;
+    }
+
+    //JOIN или LEAVE, разосланные сервером; комната меняется только по подтверждению своего входа
+    //Новые сообщения уходят в последнюю комнату, куда вошли; после выхода - в общую
+
+    public void roomChanged(Message message) {
+        if (!username.equals(message.getUsername())) {
+            return;
+        }
+        String room = message.getRoom();
+        if (message.getType() == Message.MessageType.JOIN) {
+            currentRoom = room;
+        } else if (message.getType() == Message.MessageType.LEAVE
+                && (room == null || room.equals(currentRoom))) {
+            currentRoom = null;
+        }
+    }
+
+    private void handleExit() throws IOException {
         System.out.println("\nSending disconnect message...");
 
         Message disconnectMsg = new Message(
@@ -72,8 +142,7 @@ public class ClientInputThread implements Runnable {
                 "User is leaving"
         );
 
-        out.println(disconnectMsg.toJson());
-        out.flush();
+        out.write(disconnectMsg);
 
         logger.logDisconnected(username);
 
@@ -87,7 +156,11 @@ public class ClientInputThread implements Runnable {
     public void stop() {
         isRunning = false;
         if (out != null) {
-            out.close();
+            try {
+                out.close();
+            } catch (IOException e) {
+                // соединение уже закрыто
+            }
         }
     }
 }
\ No newline at end of file
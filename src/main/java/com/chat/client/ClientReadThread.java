@@ -1,37 +1,66 @@
 package com.chat.client;
 
 import com.chat.model.Message;
+import com.chat.model.MessageReader;
+import com.chat.model.MessageWriter;
 import com.chat.util.ChatLogger;
 
 import java.io.*;
 
 
 public class ClientReadThread implements Runnable {
-    private BufferedReader in;
+    private static final int PRESENCE_DETAILS_LIMIT = 10;
+
+    private MessageReader in;
+    // Для ответа на PING сервера (может быть null)
+    private MessageWriter out;
+    private Message firstMessage;
     private ChatLogger logger;
+    // Получает подтверждения входа и выхода из комнат (может быть null)
+    private volatile ClientInputThread inputThread;
     private volatile boolean isRunning = true;
 
     public ClientReadThread(InputStream inputStream, ChatLogger logger) {
-        this.in = new BufferedReader(new InputStreamReader(inputStream));
+        this(new MessageReader(inputStream), null, logger);
+    }
+
+    //firstMessage - сообщение, прочитанное при согласовании протокола (может быть null)
+
+    public ClientReadThread(MessageReader reader, Message firstMessage, ChatLogger logger) {
+        this(reader, firstMessage, logger, null);
+    }
+
+    public ClientReadThread(MessageReader reader, Message firstMessage, ChatLogger logger, MessageWriter writer) {
+        this.out = writer;
+        this.in = reader;
+        this.firstMessage = firstMessage;
         this.logger = logger;
     }
 
     @Override
     public void run() {
         try {
-            String line;
-            while ((line = in.readLine()) != null && isRunning) {
+            Message message = firstMessage;
+            if (message == null) {
+                message = in.read();
+            }
+            while (message != null && isRunning) {
                 try {
-                    Message message = Message.fromJson(line);
-                    displayMessage(message);
-
-                    if (message.getType() != Message.MessageType.USER_LIST) {
-                        logger.log(message.toLogString());
+                    if (message.getType() == Message.MessageType.PING) {
+                        answerPing(message);
+                    } else {
+                        displayMessage(message);
+                        trackRoom(message);
+
+                        if (message.getType() != Message.MessageType.USER_LIST) {
+                            logger.log(message.toLogString());
+                        }
                     }
 
                 } catch (Exception e) {
                     System.err.println("Error parsing message: " + e.getMessage());
                 }
+                message = in.read();
             }
         } catch (IOException e) {
             if (isRunning) {
@@ -45,7 +74,16 @@ public class ClientReadThread implements Runnable {
     private void displayMessage(Message message) {
         switch (message.getType()) {
             case MESSAGE:
-                System.out.println("\n[" + message.getTimestamp() + "] " + message.getUsername() + ": " + message.getContent());
+                System.out.println("\n[" + message.getTimestamp() + "] " + roomPrefix(message)
+                        + message.getUsername() + ": " + message.getContent());
+                break;
+
+            case JOIN:
+                System.out.println("\n>>> " + message.getUsername() + " has joined #" + message.getRoom());
+                break;
+
+            case LEAVE:
+                System.out.println("\n<<< " + message.getUsername() + " has left #" + message.getRoom());
                 break;
 
             case CONNECT:
@@ -60,6 +98,10 @@ public class ClientReadThread implements Runnable {
                 System.out.println("\n" + message.getContent());
                 break;
 
+            case PRESENCE:
+                displayPresence(message.getContent());
+                break;
+
             case SYSTEM:
                 System.out.println("\n[SYSTEM] " + message.getContent());
                 break;
@@ -72,6 +114,57 @@ public class ClientReadThread implements Runnable {
         System.out.print("> ");
     }
 
+    public void setInputThread(ClientInputThread inputThread) {
+        this.inputThread = inputThread;
+    }
+
+    private void trackRoom(Message message) {
+        ClientInputThread input = inputThread;
+        if (input != null && (message.getType() == Message.MessageType.JOIN
+                || message.getType() == Message.MessageType.LEAVE)) {
+            input.roomChanged(message);
+        }
+    }
+
+    //Сервер проверяет, живо ли соединение: отвечаем PING с content "pong"
+
+    private void answerPing(Message ping) throws IOException {
+        if (out != null && !"pong".equals(ping.getContent())) {
+            out.write(new Message(Message.MessageType.PING, null, "pong", null));
+        }
+    }
+
+    //Изменения списка пользователей: строки "+имя" (вошел) и "-имя" (вышел)
+    //Большие пачки (массовое переподключение) выводятся одной строкой
+
+    private static void displayPresence(String content) {
+        if (content == null || content.isEmpty()) {
+            return;
+        }
+        String[] changes = content.split("\n");
+        if (changes.length > PRESENCE_DETAILS_LIMIT) {
+            int joined = 0;
+            for (String change : changes) {
+                if (change.startsWith("+")) {
+                    joined++;
+                }
+            }
+            System.out.println("\n>>> " + joined + " users joined, " + (changes.length - joined) + " left");
+            return;
+        }
+        for (String change : changes) {
+            if (change.startsWith("+")) {
+                System.out.println("\n>>> " + change.substring(1) + " has joined the chat");
+            } else if (change.startsWith("-")) {
+                System.out.println("\n<<< " + change.substring(1) + " has left the chat");
+            }
+        }
+    }
+
+    private static String roomPrefix(Message message) {
+        return message.getRoom() != null ? "#" + message.getRoom() + " " : "";
+    }
+
     public void stop() {
         isRunning = false;
         try {
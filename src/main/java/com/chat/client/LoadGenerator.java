@@ -0,0 +1,476 @@
+package com.chat.client;
+
+import com.chat.model.BinaryCodec;
+import com.chat.model.FrameDecoder;
+import com.chat.model.Message;
+import com.chat.util.ConfigLoader;
+import com.chat.util.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+//Нагрузочный клиент без консоли: открывает множество соединений к серверу,
+//отправляет сообщения с заданной частотой и измеряет задержку от отправки
+//до возврата собственного сообщения в рассылке
+//
+//Запуск: gradle runLoad -Pargs="--connections 2000 --rate 500 --duration 30"
+//Параметры:
+//  --host, --port     адрес сервера (default: client.server.host/port из settings.txt)
+//  --connections      число соединений (default: 100)
+//  --senders          сколько из них отправляют сообщения (default: все)
+//  --rate             сообщений в секунду суммарно (default: 100)
+//  --duration         длительность измерения, с (default: 30)
+//  --warmup           разогрев без учета задержек, с (default: 5)
+//  --threads          число потоков ввода-вывода (default: число ядер)
+//  --protocol         json или binary (default: client.protocol из settings.txt)
+//  --size             длина текста сообщения (default: 64)
+//  --room-size        соединений в одной комнате load-room-N (default: 0 - все в общей комнате)
+
+public class LoadGenerator {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final String host;
+    private final int port;
+    private final int connections;
+    private final int senders;
+    private final int rate;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    private final int threads;
+    private final boolean binary;
+    private final int messageSize;
+    private final int roomSize;
+    // Метка сообщений этого запуска: сообщения прошлых запусков из подгрузки истории не учитываются
+    private final String marker = "lg" + Long.toHexString(System.currentTimeMillis()) + " ";
+
+    public LoadGenerator(String host, int port, int connections, int senders, int rate,
+                         int durationSeconds, int warmupSeconds, int threads, boolean binary, int messageSize,
+                         int roomSize) {
+        this.host = host;
+        this.port = port;
+        this.connections = connections;
+        this.senders = Math.min(senders, connections);
+        this.rate = rate;
+        this.durationSeconds = durationSeconds;
+        this.warmupSeconds = warmupSeconds;
+        this.threads = Math.max(1, Math.min(threads, connections));
+        this.binary = binary;
+        this.messageSize = messageSize;
+        this.roomSize = roomSize;
+    }
+
+    public void run() throws InterruptedException {
+        System.out.println("Load test: " + connections + " connections (" + senders + " senders) to "
+                + host + ":" + port + ", " + rate + " msg/s, " + (binary ? BinaryCodec.PROTOCOL : "json")
+                + (roomSize > 0 ? ", rooms of " + roomSize : "")
+                + ", warmup " + warmupSeconds + "s, duration " + durationSeconds + "s");
+
+        long startNanos = System.nanoTime();
+        long measureStart = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long measureEnd = measureStart + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        Worker[] workers = new Worker[threads];
+        CountDownLatch done = new CountDownLatch(threads);
+        int senderIndex = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Worker(t, measureStart, measureEnd, done);
+        }
+        // Соединения и отправители распределяются по потокам поровну
+        for (int i = 0; i < connections; i++) {
+            Worker worker = workers[i % threads];
+            boolean sender = senderIndex < senders && i % Math.max(1, connections / Math.max(1, senders)) == 0;
+            if (sender) {
+                senderIndex++;
+            }
+            String room = roomSize > 0 ? "load-room-" + (i / roomSize) : null;
+            worker.connections.add(new Connection("load-" + i, sender, room));
+        }
+        for (Worker worker : workers) {
+            worker.rate = rate * (double) worker.senderCount() / Math.max(1, senderIndex);
+            Thread thread = new Thread(worker, "LoadGenerator-" + worker.id);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+
+        report(workers, TimeUnit.NANOSECONDS.toSeconds(measureEnd - measureStart));
+    }
+
+    private void report(Worker[] workers, long seconds) {
+        LatencyHistogram latency = new LatencyHistogram();
+        LatencyHistogram connectTime = new LatencyHistogram();
+        long firstOpen = Long.MAX_VALUE;
+        long lastReady = Long.MIN_VALUE;
+        long connected = 0;
+        long sent = 0;
+        long echoed = 0;
+        long received = 0;
+        long errors = 0;
+        for (Worker worker : workers) {
+            latency.add(worker.latency);
+            connectTime.add(worker.connectTime);
+            if (worker.connectTime.getTotalCount() > 0) {
+                firstOpen = Math.min(firstOpen, worker.firstOpen);
+                lastReady = Math.max(lastReady, worker.lastReady);
+            }
+            connected += worker.connected;
+            sent += worker.sent;
+            echoed += worker.echoed;
+            received += worker.received;
+            errors += worker.errors;
+        }
+        double duration = Math.max(1, seconds);
+
+        System.out.println();
+        System.out.println("---------------------------------------");
+        System.out.println("   LOAD TEST RESULTS");
+        System.out.println("---------------------------------------");
+        System.out.printf("Connections:   %d of %d (%d errors)%n", connected, connections, errors);
+        if (connectTime.getTotalCount() > 0) {
+            // От открытия первого соединения до готовности последнего
+            double connectSeconds = Math.max(1, lastReady - firstOpen) / 1e9;
+            System.out.printf("Connect, ms:   p50=%.3f p99=%.3f max=%.3f (%.0f conn/s)%n",
+                    connectTime.getValueAtPercentile(50) / 1000.0,
+                    connectTime.getValueAtPercentile(99) / 1000.0,
+                    connectTime.getMax() / 1000.0,
+                    connectTime.getTotalCount() / connectSeconds);
+        }
+        System.out.printf("Sent:          %d (%.1f msg/s)%n", sent, sent / duration);
+        System.out.printf("Echoed:        %d (%.1f msg/s)%n", echoed, echoed / duration);
+        System.out.printf("Delivered:     %d (%.1f msg/s)%n", received, received / duration);
+        System.out.printf("Latency, ms:   p50=%.3f p99=%.3f p99.9=%.3f max=%.3f%n",
+                latency.getValueAtPercentile(50) / 1000.0,
+                latency.getValueAtPercentile(99) / 1000.0,
+                latency.getValueAtPercentile(99.9) / 1000.0,
+                latency.getMax() / 1000.0);
+        System.out.println();
+        latency.outputPercentileDistribution(System.out, 1000.0);
+    }
+
+    //Поток ввода-вывода: свой Selector и своя часть соединений
+
+    private final class Worker implements Runnable {
+        private final int id;
+        private final long measureStart;
+        private final long measureEnd;
+        private final CountDownLatch done;
+        private final List<Connection> connections = new ArrayList<>();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        // Время от открытия соединения до ответа сервера на CONNECT, мкс
+        private final LatencyHistogram connectTime = new LatencyHistogram();
+        private long firstOpen;
+        private long lastReady;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final String padding;
+        private double rate;
+        private long connected;
+        private long sent;
+        private long echoed;
+        private long received;
+        private long errors;
+
+        private Worker(int id, long measureStart, long measureEnd, CountDownLatch done) {
+            this.id = id;
+            this.measureStart = measureStart;
+            this.measureEnd = measureEnd;
+            this.done = done;
+            StringBuilder text = new StringBuilder();
+            while (text.length() < messageSize) {
+                text.append('x');
+            }
+            this.padding = text.toString();
+        }
+
+        private int senderCount() {
+            int count = 0;
+            for (Connection connection : connections) {
+                if (connection.sender) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public void run() {
+            try (Selector selector = Selector.open()) {
+                firstOpen = System.nanoTime();
+                for (Connection connection : connections) {
+                    connection.open(selector);
+                }
+
+                List<Connection> senderList = new ArrayList<>();
+                for (Connection connection : connections) {
+                    if (connection.sender) {
+                        senderList.add(connection);
+                    }
+                }
+
+                long start = System.nanoTime();
+                long scheduled = 0;
+                int nextSender = 0;
+                while (System.nanoTime() < measureEnd) {
+                    selector.select(1);
+                    processKeys(selector);
+
+                    // Отправляем столько, сколько положено к этому моменту по частоте
+                    long now = System.nanoTime();
+                    long due = (long) ((now - start) / 1e9 * rate) - scheduled;
+                    for (long i = 0; i < due && !senderList.isEmpty(); i++) {
+                        Connection connection = senderList.get(nextSender);
+                        nextSender = (nextSender + 1) % senderList.size();
+                        scheduled++;
+                        if (connection.ready) {
+                            send(connection, now);
+                        }
+                    }
+                }
+
+                for (Connection connection : connections) {
+                    connection.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Load generator error: " + e.getMessage());
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private void processKeys(Selector selector) {
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if (key.isConnectable()) {
+                        connection.finishConnect();
+                        connected++;
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        read(connection);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                } catch (IOException e) {
+                    errors++;
+                    connection.close();
+                }
+            }
+        }
+
+        private void onReady(Connection connection, long now) throws IOException {
+            if (connection.onReady()) {
+                connectTime.recordValue(TimeUnit.NANOSECONDS.toMicros(now - connection.openedAt));
+                lastReady = now;
+            }
+        }
+
+        private void send(Connection connection, long now) {
+            Message message = new Message(Message.MessageType.MESSAGE, connection.username,
+                    marker + now + " " + padding);
+            message.setRoom(connection.room);
+            try {
+                connection.send(message);
+                if (now >= measureStart) {
+                    sent++;
+                }
+            } catch (IOException e) {
+                errors++;
+                connection.close();
+            }
+        }
+
+        private void read(Connection connection) throws IOException {
+            readBuffer.clear();
+            int read = connection.channel.read(readBuffer);
+            if (read < 0) {
+                throw new IOException("Connection closed by server");
+            }
+            readBuffer.flip();
+
+            Message message;
+            while ((message = connection.decoder.decode(readBuffer)) != null) {
+                onMessage(connection, message);
+            }
+        }
+
+        private void onMessage(Connection connection, Message message) throws IOException {
+            long now = System.nanoTime();
+            if (message.getType() == Message.MessageType.PING) {
+                // Проверка простоя: без ответа сервер закроет молчащие соединения
+                if (!"pong".equals(message.getContent())) {
+                    connection.send(new Message(Message.MessageType.PING, null, "pong", null));
+                }
+                return;
+            }
+            if (message.getType() == Message.MessageType.SYSTEM
+                    && BinaryCodec.PROTOCOL.equals(message.getProtocol())) {
+                // Сервер подтвердил двоичный протокол
+                connection.decoder.setBinary(true);
+                connection.binary = true;
+                onReady(connection, now);
+                return;
+            }
+            if (message.getType() == Message.MessageType.USER_LIST) {
+                onReady(connection, now);
+                return;
+            }
+            if (message.getType() != Message.MessageType.MESSAGE) {
+                return;
+            }
+
+            if (now >= measureStart) {
+                received++;
+            }
+            String content = message.getContent();
+            if (connection.username.equals(message.getUsername()) && content != null && content.startsWith(marker)) {
+                int end = content.indexOf(' ', marker.length());
+                long sentAt = Long.parseLong(content.substring(marker.length(), end < 0 ? content.length() : end));
+                if (sentAt >= measureStart) {
+                    echoed++;
+                    latency.recordValue(TimeUnit.NANOSECONDS.toMicros(now - sentAt));
+                }
+            }
+        }
+    }
+
+    //Одно имитируемое соединение
+
+    private final class Connection {
+        private final String username;
+        private final boolean sender;
+        private final String room;
+        private final FrameDecoder decoder = new FrameDecoder();
+        private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+        private SocketChannel channel;
+        private SelectionKey key;
+        private boolean binary = false;
+        private boolean ready = false;
+        private long openedAt;
+
+        private Connection(String username, boolean sender, String room) {
+            this.username = username;
+            this.sender = sender;
+            this.room = room;
+        }
+
+        private void open(Selector selector) throws IOException {
+            openedAt = System.nanoTime();
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.connect(new InetSocketAddress(host, port));
+            key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+        }
+
+        private void finishConnect() throws IOException {
+            channel.finishConnect();
+            key.interestOps(SelectionKey.OP_READ);
+
+            Message connect = new Message(Message.MessageType.CONNECT, username, "User has connected");
+            if (LoadGenerator.this.binary) {
+                connect.setProtocol(BinaryCodec.PROTOCOL);
+            }
+            send(connect);
+        }
+
+        //Сервер принял подключение: входим в свою комнату (уже в выбранном протоколе)
+        //Возвращает false, если соединение уже было готово
+
+        private boolean onReady() throws IOException {
+            if (ready) {
+                return false;
+            }
+            ready = true;
+            if (room != null) {
+                Message join = new Message(Message.MessageType.JOIN, username, "/join " + room);
+                join.setRoom(room);
+                send(join);
+            }
+            return true;
+        }
+
+        private void send(Message message) throws IOException {
+            byte[] frame = binary
+                    ? BinaryCodec.encode(message)
+                    : (message.toJson() + "\n").getBytes(StandardCharsets.UTF_8);
+            pending.add(ByteBuffer.wrap(frame));
+            flush();
+        }
+
+        private void flush() throws IOException {
+            while (!pending.isEmpty()) {
+                ByteBuffer buffer = pending.peek();
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    // Сокет заполнен - допишем, когда станет доступен для записи
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                pending.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void close() {
+            ready = false;
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                // соединение уже закрыто
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ConfigLoader config = new ConfigLoader();
+        String host = config.getClientServerHost();
+        int port = config.getClientServerPort();
+        int connections = 100;
+        int senders = -1;
+        int rate = 100;
+        int duration = 30;
+        int warmup = 5;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean binary = "binary".equals(config.getClientProtocol());
+        int size = 64;
+        int roomSize = 0;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--host": host = value; break;
+                case "--port": port = Integer.parseInt(value); break;
+                case "--connections": connections = Integer.parseInt(value); break;
+                case "--senders": senders = Integer.parseInt(value); break;
+                case "--rate": rate = Integer.parseInt(value); break;
+                case "--duration": duration = Integer.parseInt(value); break;
+                case "--warmup": warmup = Integer.parseInt(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--protocol": binary = "binary".equalsIgnoreCase(value); break;
+                case "--size": size = Integer.parseInt(value); break;
+                case "--room-size": roomSize = Integer.parseInt(value); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+
+        new LoadGenerator(host, port, connections, senders < 0 ? connections : senders, rate,
+                duration, warmup, threads, binary, size, roomSize).run();
+    }
+}
@@ -0,0 +1,189 @@
+package com.chat.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+//Компактный двоичный формат сообщений (согласуется при CONNECT, иначе используется JSON)
+//
+//Кадр: [int32 длина тела][тело]
+//Тело: [байт типа = ordinal, 0xFF - null]
+//      [varint длина+1][UTF-8 username]   (0 - null)
+//      [varint длина+1][UTF-8 content]    (0 - null)
+//      [varint секунды+1][timestamp]      (0 - null, секунды эпохи локального времени)
+//      [varint длина+1][UTF-8 room]        (необязательно: нет в общей комнате)
+//      [varint version+1]                  (необязательно: только в USER_LIST и PRESENCE)
+
+public final class BinaryCodec {
+    public static final String PROTOCOL = "binary/1";
+    public static final int HEADER_SIZE = 4;
+
+    private static final int NULL_TYPE = 0xFF;
+    private static final Message.MessageType[] TYPES = Message.MessageType.values();
+    private static final DateTimeFormatter formatter =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Последняя отформатированная секунда: сообщения одной секунды не форматируются заново
+    private static final ThreadLocal<CachedTimestamp> LAST_TIMESTAMP =
+            ThreadLocal.withInitial(CachedTimestamp::new);
+
+    private BinaryCodec() {
+    }
+
+    //Кодирование в полный кадр вместе с префиксом длины
+
+    public static byte[] encode(Message message) {
+        byte[] username = utf8(message.getUsername());
+        byte[] content = utf8(message.getContent());
+        byte[] room = utf8(message.getRoom());
+        long seconds = toEpochSeconds(message.getTimestamp());
+        Long version = message.getVersion();
+
+        int bodySize = 1
+                + stringSize(username)
+                + stringSize(content)
+                + varintSize(seconds + 1)
+                + (room != null || version != null ? stringSize(room) : 0)
+                + (version != null ? varintSize(version + 1) : 0);
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + bodySize);
+        out.putInt(bodySize);
+        out.put((byte) (message.getType() != null ? message.getType().ordinal() : NULL_TYPE));
+        writeString(out, username);
+        writeString(out, content);
+        writeVarint(out, seconds + 1);
+        if (room != null || version != null) {
+            writeString(out, room);
+        }
+        if (version != null) {
+            writeVarint(out, version + 1);
+        }
+        return out.array();
+    }
+
+    //Декодирование тела кадра (без префикса длины)
+    //Возвращает null, если тело повреждено
+
+    public static Message decode(byte[] body, int offset, int length) {
+        ByteBuffer in = ByteBuffer.wrap(body, offset, length);
+        try {
+            int typeByte = in.get() & 0xFF;
+            Message.MessageType type = typeByte < TYPES.length ? TYPES[typeByte] : null;
+            String username = readString(in);
+            String content = readString(in);
+            long seconds = readVarint(in);
+            String timestamp = seconds == 0 ? null : fromEpochSeconds(seconds - 1);
+            Message message = new Message(type, username, content, timestamp);
+            if (in.hasRemaining()) {
+                message.setRoom(readString(in));
+            }
+            if (in.hasRemaining()) {
+                long version = readVarint(in);
+                message.setVersion(version == 0 ? null : version - 1);
+            }
+            return message;
+        } catch (RuntimeException e) {
+            // BufferUnderflowException или некорректная длина строки
+            return null;
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int stringSize(byte[] value) {
+        if (value == null) {
+            return 1;
+        }
+        return varintSize(value.length + 1L) + value.length;
+    }
+
+    private static void writeString(ByteBuffer out, byte[] value) {
+        if (value == null) {
+            out.put((byte) 0);
+            return;
+        }
+        writeVarint(out, value.length + 1L);
+        out.put(value);
+    }
+
+    private static String readString(ByteBuffer in) {
+        long length = readVarint(in);
+        if (length == 0) {
+            return null;
+        }
+        if (length - 1 > in.remaining()) {
+            throw new IllegalArgumentException("String length exceeds frame");
+        }
+        int size = (int) (length - 1);
+        String value = new String(in.array(), in.arrayOffset() + in.position(), size, StandardCharsets.UTF_8);
+        in.position(in.position() + size);
+        return value;
+    }
+
+    static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static void writeVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint is too long");
+    }
+
+    //"yyyy-MM-dd HH:mm:ss" -> секунды; -1, если время отсутствует или в другом формате
+
+    static long toEpochSeconds(String timestamp) {
+        if (timestamp == null || timestamp.length() != 19) {
+            return -1;
+        }
+        CachedTimestamp cached = LAST_TIMESTAMP.get();
+        if (timestamp.equals(cached.text)) {
+            return cached.seconds;
+        }
+        try {
+            long seconds = LocalDateTime.parse(timestamp, formatter).toEpochSecond(ZoneOffset.UTC);
+            cached.seconds = seconds;
+            cached.text = timestamp;
+            return seconds;
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    static String fromEpochSeconds(long seconds) {
+        CachedTimestamp cached = LAST_TIMESTAMP.get();
+        if (cached.seconds != seconds || cached.text == null) {
+            cached.text = LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC).format(formatter);
+            cached.seconds = seconds;
+        }
+        return cached.text;
+    }
+
+    private static final class CachedTimestamp {
+        private long seconds;
+        private String text;
+    }
+}
@@ -0,0 +1,250 @@
+package com.chat.model;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+//Разбор входящего потока байтов на сообщения
+//Два режима: строки JSON, разделенные '\n', и двоичные кадры с префиксом длины (BinaryCodec)
+//Режим можно переключить между кадрами - так сервер и клиент переходят на двоичный протокол после CONNECT
+//
+//Размер кадра ограничен maxFrameBytes: кадр больше лимита не накапливается в памяти,
+//а пропускается до конца (до '\n' или по длине из заголовка), поэтому память на соединение
+//не превышает лимита. JSON декодируется из UTF-8 явно, в переиспользуемый буфер символов
+
+public class FrameDecoder {
+    public static final int DEFAULT_MAX_FRAME_BYTES = 1024 * 1024;
+
+    private static final int INITIAL_CAPACITY = 256;
+    // Буферы, выросшие из-за длинного сообщения, после него возвращаются к начальному размеру
+    private static final int RETAINED_CAPACITY = 64 * 1024;
+
+    private boolean binary;
+    private int maxFrameBytes = DEFAULT_MAX_FRAME_BYTES;
+    private byte[] frame = new byte[INITIAL_CAPACITY];
+    private int frameLength = 0;
+    // Длина тела двоичного кадра, -1 - еще читаем заголовок
+    private int bodyLength = -1;
+    // Пропуск слишком длинного кадра: сколько байтов двоичного тела осталось, для JSON - до '\n'
+    private boolean skipping = false;
+    private long skipRemaining = 0;
+    private long skippedLength = 0;
+
+    private final CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer chars = CharBuffer.allocate(INITIAL_CAPACITY);
+
+    // Получает время разбора каждого сообщения в наносекундах (null - не измерять)
+    private LongConsumer decodeTimer;
+    // Получает размер каждого пропущенного кадра (null - не сообщать)
+    private IntConsumer oversizedListener;
+
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public void setMaxFrameBytes(int maxFrameBytes) {
+        this.maxFrameBytes = Math.max(1, maxFrameBytes);
+    }
+
+    public int getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+
+    public void setDecodeTimer(LongConsumer decodeTimer) {
+        this.decodeTimer = decodeTimer;
+    }
+
+    public void setOversizedListener(IntConsumer oversizedListener) {
+        this.oversizedListener = oversizedListener;
+    }
+
+    //Следующее сообщение из буфера или null, если нужно больше данных
+    //Буфер читается только до конца найденного кадра, остаток разбирается следующим вызовом
+
+    public Message decode(ByteBuffer in) throws ProtocolException {
+        long start = decodeTimer != null ? System.nanoTime() : 0;
+        while (in.hasRemaining()) {
+            if (skipping) {
+                if (!skip(in)) {
+                    return null;
+                }
+                continue;
+            }
+
+            boolean complete = binary ? readBinaryFrame(in) : readLine(in);
+            if (skipping) {
+                // Кадр оказался длиннее лимита - дальше он только пропускается
+                continue;
+            }
+            if (!complete) {
+                return null;
+            }
+
+            Message message;
+            if (binary) {
+                message = BinaryCodec.decode(frame, 0, frameLength);
+                bodyLength = -1;
+            } else {
+                message = decodeLine();
+            }
+            frameLength = 0;
+            releaseLargeBuffers();
+
+            // Пустые и поврежденные кадры пропускаем
+            if (message != null) {
+                if (decodeTimer != null) {
+                    decodeTimer.accept(System.nanoTime() - start);
+                }
+                return message;
+            }
+        }
+        return null;
+    }
+
+    //Строка до '\n': байты копируются кусками, без разбора по одному
+
+    private boolean readLine(ByteBuffer in) {
+        int position = in.position();
+        int limit = in.limit();
+        int end = position;
+        while (end < limit && in.get(end) != '\n') {
+            end++;
+        }
+        boolean complete = end < limit;
+        int length = end - position;
+
+        if ((long) frameLength + length > maxFrameBytes) {
+            // Строка не помещается: уже прочитанное выбрасываем, остаток пропускаем до '\n'
+            int buffered = frameLength;
+            frameLength = 0;
+            startSkipping(buffered, 0);
+            in.position(position);
+            return false;
+        }
+
+        ensureCapacity(frameLength + length);
+        in.get(frame, frameLength, length);
+        frameLength += length;
+        if (complete) {
+            in.get();
+        }
+        return complete;
+    }
+
+    private Message decodeLine() {
+        int length = frameLength;
+        if (length > 0 && frame[length - 1] == '\r') {
+            length--;
+        }
+        if (length == 0) {
+            return null;
+        }
+
+        int maxChars = (int) Math.ceil(length * (double) utf8.maxCharsPerByte());
+        if (chars.capacity() < maxChars) {
+            chars = CharBuffer.allocate(Math.max(maxChars, chars.capacity() * 2));
+        }
+        chars.clear();
+        utf8.reset();
+        utf8.decode(ByteBuffer.wrap(frame, 0, length), chars, true);
+        utf8.flush(chars);
+        chars.flip();
+        return MessageCodec.decode(chars);
+    }
+
+    private boolean readBinaryFrame(ByteBuffer in) throws ProtocolException {
+        if (bodyLength < 0) {
+            while (frameLength < BinaryCodec.HEADER_SIZE && in.hasRemaining()) {
+                frame[frameLength++] = in.get();
+            }
+            if (frameLength < BinaryCodec.HEADER_SIZE) {
+                return false;
+            }
+            bodyLength = ByteBuffer.wrap(frame, 0, BinaryCodec.HEADER_SIZE).getInt();
+            frameLength = 0;
+            if (bodyLength <= 0) {
+                // После испорченного заголовка границы кадров уже не восстановить
+                throw new ProtocolException("Invalid binary frame length: " + bodyLength);
+            }
+            if (bodyLength > maxFrameBytes) {
+                // Длина известна заранее: тело пропускаем, не читая в память
+                startSkipping(bodyLength, bodyLength);
+                bodyLength = -1;
+                return true;
+            }
+        }
+
+        int needed = bodyLength - frameLength;
+        int available = Math.min(needed, in.remaining());
+        ensureCapacity(frameLength + available);
+        in.get(frame, frameLength, available);
+        frameLength += available;
+        return frameLength == bodyLength;
+    }
+
+    private void startSkipping(long frameSize, long remaining) {
+        skipping = true;
+        skippedLength = frameSize;
+        skipRemaining = remaining;
+        releaseLargeBuffers();
+    }
+
+    //Пропустить остаток слишком длинного кадра; true - кадр пропущен целиком
+
+    private boolean skip(ByteBuffer in) {
+        if (binary) {
+            int count = (int) Math.min(skipRemaining, in.remaining());
+            in.position(in.position() + count);
+            skipRemaining -= count;
+            if (skipRemaining > 0) {
+                return false;
+            }
+        } else {
+            int position = in.position();
+            int limit = in.limit();
+            while (position < limit && in.get(position) != '\n') {
+                position++;
+            }
+            skippedLength += position - in.position();
+            if (position == limit) {
+                in.position(limit);
+                return false;
+            }
+            in.position(position + 1);
+        }
+
+        skipping = false;
+        if (oversizedListener != null) {
+            oversizedListener.accept((int) Math.min(Integer.MAX_VALUE, skippedLength));
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > frame.length) {
+            frame = Arrays.copyOf(frame, Math.min(Math.max(capacity, frame.length * 2),
+                    Math.max(capacity, maxFrameBytes)));
+        }
+    }
+
+    private void releaseLargeBuffers() {
+        if (frame.length > RETAINED_CAPACITY && frameLength == 0) {
+            frame = new byte[INITIAL_CAPACITY];
+        }
+        if (chars.capacity() > RETAINED_CAPACITY) {
+            chars = CharBuffer.allocate(INITIAL_CAPACITY);
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package com.chat.model;
 
-import com.google.gson.Gson;
-
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -18,13 +16,22 @@ public class Message implements Serializable {
         DISCONNECT,   // Пользователь отключился
         USER_LIST,    // Список пользователей
         PING,         // Проверка соединения
-        SYSTEM        // Системное сообщение
+        SYSTEM,       // Системное сообщение
+        JOIN,         // Вход в комнату (room)
+        LEAVE,        // Выход из комнаты (room)
+        PRESENCE      // Изменения списка пользователей (version)
     }
 
     private MessageType type;
     private String username;
     private String content;
     private String timestamp;
+    // Протокол, который клиент предлагает в CONNECT (null - JSON)
+    private String protocol;
+    // Комната сообщения (null - общая комната)
+    private String room;
+    // Версия списка пользователей в USER_LIST и PRESENCE (null в остальных)
+    private Long version;
 
     public Message() {
         this.timestamp = LocalDateTime.now().format(formatter);
@@ -79,18 +86,40 @@ public class Message implements Serializable {
         this.timestamp = timestamp;
     }
 
-    //сериализация из json
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public void setProtocol(String protocol) {
+        this.protocol = protocol;
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public void setRoom(String room) {
+        this.room = room;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    //сериализация в json
     public String toJson() {
-        Gson gson = new Gson();
-        return gson.toJson(this);
+        return MessageCodec.encode(this);
     }
 
 
-    //десериализация из json
+    //десериализация из json (null, если строка пустая или некорректная)
 
     public static Message fromJson(String json) {
-        Gson gson = new Gson();
-        return gson.fromJson(json, Message.class);
+        return MessageCodec.decode(json);
     }
 
     @Override
@@ -0,0 +1,454 @@
+package com.chat.model;
+
+//Потоковый JSON-кодек сообщений без reflection
+//Формат совпадает с тем, что выдавал Gson: поля type, username, content, timestamp
+//(protocol в CONNECT, room в сообщениях комнат, числовое version в USER_LIST и PRESENCE),
+//null-поля пропускаются, HTML-символы экранируются в виде unicode-escape
+//Буферы переиспользуются в пределах потока, ошибки разбора не порождают стек вызовов
+
+public final class MessageCodec {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final Message.MessageType[] TYPES = Message.MessageType.values();
+
+    private static final ThreadLocal<StringBuilder> WRITE_BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static final ThreadLocal<Reader> READER =
+            ThreadLocal.withInitial(Reader::new);
+
+    private MessageCodec() {
+    }
+
+    //сериализация в json
+
+    public static String encode(Message message) {
+        StringBuilder out = WRITE_BUFFER.get();
+        out.setLength(0);
+        encode(message, out);
+        String json = out.toString();
+        // Не держим в потоке огромный буфер после длинного сообщения
+        if (out.capacity() > 64 * 1024) {
+            WRITE_BUFFER.remove();
+        }
+        return json;
+    }
+
+    public static void encode(Message message, StringBuilder out) {
+        out.append('{');
+        boolean first = true;
+        if (message.getType() != null) {
+            first = writeField(out, "type", message.getType().name(), first);
+        }
+        first = writeField(out, "username", message.getUsername(), first);
+        first = writeField(out, "content", message.getContent(), first);
+        first = writeField(out, "timestamp", message.getTimestamp(), first);
+        first = writeField(out, "protocol", message.getProtocol(), first);
+        first = writeField(out, "room", message.getRoom(), first);
+        if (message.getVersion() != null) {
+            if (!first) {
+                out.append(',');
+            }
+            out.append("\"version\":").append(message.getVersion().longValue());
+        }
+        out.append('}');
+    }
+
+    private static boolean writeField(StringBuilder out, String name, String value, boolean first) {
+        if (value == null) {
+            return first;
+        }
+        if (!first) {
+            out.append(',');
+        }
+        out.append('"').append(name).append("\":");
+        writeString(out, value);
+        return false;
+    }
+
+    private static void writeString(StringBuilder out, String value) {
+        out.append('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                case '<':
+                case '>':
+                case '&':
+                case '=':
+                case '\'':
+                case '\u2028':
+                case '\u2029':
+                    writeUnicodeEscape(out, c);
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writeUnicodeEscape(out, c);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    private static void writeUnicodeEscape(StringBuilder out, char c) {
+        out.append("\\u")
+                .append(HEX[(c >> 12) & 0xF])
+                .append(HEX[(c >> 8) & 0xF])
+                .append(HEX[(c >> 4) & 0xF])
+                .append(HEX[c & 0xF]);
+    }
+
+    //десериализация из json
+    //Возвращает null для пустой строки и некорректного JSON, неизвестные поля пропускаются
+
+    public static Message decode(CharSequence json) {
+        if (json == null) {
+            return null;
+        }
+        Reader reader = READER.get();
+        reader.reset(json);
+        try {
+            return reader.readMessage();
+        } catch (MalformedJsonException e) {
+            return null;
+        } finally {
+            reader.reset(null);
+        }
+    }
+
+    //Сигнал ошибки разбора: один заранее созданный экземпляр без стека вызовов
+    private static final class MalformedJsonException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private static final MalformedJsonException INSTANCE = new MalformedJsonException();
+
+        private MalformedJsonException() {
+            super("Malformed message JSON", null, false, false);
+        }
+    }
+
+    //Потоковый разборщик поверх CharSequence, один на поток
+    private static final class Reader {
+        private final StringBuilder scratch = new StringBuilder(128);
+        private CharSequence in;
+        private int pos;
+        private int end;
+
+        void reset(CharSequence json) {
+            this.in = json;
+            this.pos = 0;
+            this.end = json != null ? json.length() : 0;
+            if (scratch.capacity() > 64 * 1024) {
+                scratch.setLength(0);
+                scratch.trimToSize();
+            }
+        }
+
+        Message readMessage() {
+            skipWhitespace();
+            if (pos == end) {
+                // Как и Gson: пустой ввод - нет сообщения
+                return null;
+            }
+            expect('{');
+
+            Message message = new Message();
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    skipWhitespace();
+                    int keyStart = pos + 1;
+                    skipString();
+                    int keyEnd = pos - 1;
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+                    readField(message, keyStart, keyEnd);
+                    skipWhitespace();
+
+                    char c = next();
+                    if (c == '}') {
+                        break;
+                    }
+                    if (c != ',') {
+                        throw MalformedJsonException.INSTANCE;
+                    }
+                }
+            }
+
+            skipWhitespace();
+            if (pos != end) {
+                throw MalformedJsonException.INSTANCE;
+            }
+            return message;
+        }
+
+        private void readField(Message message, int keyStart, int keyEnd) {
+            if (keyEquals(keyStart, keyEnd, "type")) {
+                String value = readNullableString();
+                message.setType(value != null ? parseType(value) : null);
+            } else if (keyEquals(keyStart, keyEnd, "username")) {
+                message.setUsername(readNullableString());
+            } else if (keyEquals(keyStart, keyEnd, "content")) {
+                message.setContent(readNullableString());
+            } else if (keyEquals(keyStart, keyEnd, "timestamp")) {
+                message.setTimestamp(readNullableString());
+            } else if (keyEquals(keyStart, keyEnd, "protocol")) {
+                message.setProtocol(readNullableString());
+            } else if (keyEquals(keyStart, keyEnd, "room")) {
+                message.setRoom(readNullableString());
+            } else if (keyEquals(keyStart, keyEnd, "version")) {
+                message.setVersion(readNullableLong());
+            } else {
+                skipValue();
+            }
+        }
+
+        private static Message.MessageType parseType(String value) {
+            for (Message.MessageType type : TYPES) {
+                if (type.name().equals(value)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+        private boolean keyEquals(int start, int stop, String name) {
+            if (stop - start != name.length()) {
+                return false;
+            }
+            for (int i = 0; i < name.length(); i++) {
+                if (in.charAt(start + i) != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String readNullableString() {
+            if (peek() == 'n') {
+                expectLiteral("null");
+                return null;
+            }
+            return readString();
+        }
+
+        private Long readNullableLong() {
+            if (peek() == 'n') {
+                expectLiteral("null");
+                return null;
+            }
+            int start = pos;
+            while (pos < end && isNumberChar(in.charAt(pos))) {
+                pos++;
+            }
+            try {
+                return Long.parseLong(in.subSequence(start, pos).toString());
+            } catch (NumberFormatException e) {
+                throw MalformedJsonException.INSTANCE;
+            }
+        }
+
+        private String readString() {
+            expect('"');
+            int start = pos;
+            // Быстрый путь: строка без escape-последовательностей
+            while (pos < end) {
+                char c = in.charAt(pos);
+                if (c == '"') {
+                    String value = in.subSequence(start, pos).toString();
+                    pos++;
+                    return value;
+                }
+                if (c == '\\') {
+                    break;
+                }
+                pos++;
+            }
+
+            scratch.setLength(0);
+            scratch.append(in, start, pos);
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return scratch.toString();
+                }
+                if (c != '\\') {
+                    scratch.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        scratch.append(escaped);
+                        break;
+                    case 'n':
+                        scratch.append('\n');
+                        break;
+                    case 'r':
+                        scratch.append('\r');
+                        break;
+                    case 't':
+                        scratch.append('\t');
+                        break;
+                    case 'b':
+                        scratch.append('\b');
+                        break;
+                    case 'f':
+                        scratch.append('\f');
+                        break;
+                    case 'u':
+                        scratch.append(readHexChar());
+                        break;
+                    default:
+                        throw MalformedJsonException.INSTANCE;
+                }
+            }
+        }
+
+        private char readHexChar() {
+            if (pos + 4 > end) {
+                throw MalformedJsonException.INSTANCE;
+            }
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(in.charAt(pos++), 16);
+                if (digit < 0) {
+                    throw MalformedJsonException.INSTANCE;
+                }
+                value = (value << 4) | digit;
+            }
+            return (char) value;
+        }
+
+        private void skipString() {
+            expect('"');
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return;
+                }
+                if (c == '\\') {
+                    next();
+                }
+            }
+        }
+
+        //Пропустить значение неизвестного поля любого типа
+
+        private void skipValue() {
+            char c = peek();
+            switch (c) {
+                case '"':
+                    skipString();
+                    break;
+                case '{':
+                    skipContainer('{', '}');
+                    break;
+                case '[':
+                    skipContainer('[', ']');
+                    break;
+                case 't':
+                    expectLiteral("true");
+                    break;
+                case 'f':
+                    expectLiteral("false");
+                    break;
+                case 'n':
+                    expectLiteral("null");
+                    break;
+                default:
+                    int start = pos;
+                    while (pos < end && isNumberChar(in.charAt(pos))) {
+                        pos++;
+                    }
+                    if (pos == start) {
+                        throw MalformedJsonException.INSTANCE;
+                    }
+            }
+        }
+
+        private void skipContainer(char open, char close) {
+            int depth = 0;
+            while (true) {
+                char c = peek();
+                if (c == '"') {
+                    skipString();
+                    continue;
+                }
+                pos++;
+                if (c == open) {
+                    depth++;
+                } else if (c == close && --depth == 0) {
+                    return;
+                }
+            }
+        }
+
+        private static boolean isNumberChar(char c) {
+            return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+        }
+
+        private void expectLiteral(String literal) {
+            for (int i = 0; i < literal.length(); i++) {
+                if (next() != literal.charAt(i)) {
+                    throw MalformedJsonException.INSTANCE;
+                }
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < end) {
+                char c = in.charAt(pos);
+                if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw MalformedJsonException.INSTANCE;
+            }
+        }
+
+        private char peek() {
+            if (pos >= end) {
+                throw MalformedJsonException.INSTANCE;
+            }
+            return in.charAt(pos);
+        }
+
+        private char next() {
+            if (pos >= end) {
+                throw MalformedJsonException.INSTANCE;
+            }
+            return in.charAt(pos++);
+        }
+    }
+}
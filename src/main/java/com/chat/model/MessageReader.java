@@ -0,0 +1,51 @@
+package com.chat.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+//Блокирующее чтение сообщений из потока (JSON или двоичный протокол)
+
+public class MessageReader {
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private final FrameDecoder decoder;
+    private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+    public MessageReader(InputStream in) {
+        this(in, new FrameDecoder());
+    }
+
+    public MessageReader(InputStream in, FrameDecoder decoder) {
+        this.in = in;
+        this.decoder = decoder;
+        buffer.limit(0);
+    }
+
+    //Следующее сообщение или null, если соединение закрыто
+
+    public Message read() throws IOException {
+        while (true) {
+            Message message = decoder.decode(buffer);
+            if (message != null) {
+                return message;
+            }
+
+            int read = in.read(buffer.array());
+            if (read < 0) {
+                return null;
+            }
+            buffer.position(0);
+            buffer.limit(read);
+        }
+    }
+
+    public void setBinary(boolean binary) {
+        decoder.setBinary(binary);
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+}
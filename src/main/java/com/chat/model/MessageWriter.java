@@ -0,0 +1,45 @@
+package com.chat.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Отправка сообщений в поток (JSON или двоичный протокол)
+//Потокобезопасен: кадры из разных потоков не перемешиваются
+
+public class MessageWriter {
+    private final OutputStream out;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean binary;
+
+    public MessageWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public void write(Message message) throws IOException {
+        byte[] frame = binary
+                ? BinaryCodec.encode(message)
+                : (message.toJson() + "\n").getBytes(StandardCharsets.UTF_8);
+
+        lock.lock();
+        try {
+            out.write(frame);
+            out.flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -1,15 +1,18 @@
 package com.chat.server;
 
+import com.chat.server.history.MessageStore;
 import com.chat.util.ChatLogger;
 import com.chat.util.ConfigLoader;
 
 import java.io.*;
+import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 // Главный класс сервера чата
@@ -20,16 +23,70 @@ public class ChatServer {
     private ChatLogger logger;
     private ConfigLoader config;
     private ClientPool clientPool;
+    private MessageStore history;
     private ExecutorService threadPool;
+    private ExecutorService writerPool;
+    private ServerContext context;
     private volatile boolean isRunning = false;
+    // shutdown() вызывают и finally в start(), и shutdown hook - выполняется один раз
+    private final AtomicBoolean stopped = new AtomicBoolean();
 
     private static final int THREAD_POOL_SIZE = 10;
+    static final int DEFAULT_ACCEPT_BACKLOG = 1024;
 
     public ChatServer() {
-        this.config = new ConfigLoader();
-        this.logger = new ChatLogger(config.getFullLogPath());
+        this(new ConfigLoader());
+    }
+
+    public ChatServer(ConfigLoader config) {
+        this.config = config;
+        this.logger = ChatLogger.create(config);
         this.clientPool = new ClientPool();
-        this.threadPool = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+        this.threadPool = createThreadPool(config.getServerMode());
+        this.writerPool = createWriterPool(config.getServerMode());
+        this.history = MessageStore.create(config);
+        this.context = new ServerContext(config, logger, clientPool, writerPool, history);
+    }
+
+    //Пул потоков обработчиков: фиксированный пул платформенных потоков
+    //или виртуальный поток на каждое соединение (server.mode=virtual, Java 21+)
+
+    private static ExecutorService createThreadPool(String mode) {
+        if ("virtual".equals(mode)) {
+            ExecutorService virtualPool = newVirtualThreadExecutor();
+            if (virtualPool != null) {
+                return virtualPool;
+            }
+            System.err.println("Virtual threads require Java 21+, falling back to "
+                    + THREAD_POOL_SIZE + " platform threads");
+        }
+        return Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+    }
+
+    //Писатели исходящих очередей: поток занят, только пока у клиента есть неотправленные кадры
+
+    private static ExecutorService createWriterPool(String mode) {
+        if ("virtual".equals(mode)) {
+            ExecutorService virtualPool = newVirtualThreadExecutor();
+            if (virtualPool != null) {
+                return virtualPool;
+            }
+        }
+        return Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "ClientWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            // Через reflection, чтобы сборка оставалась совместимой с Java 11
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
     }
 
     //запуск сурвера
@@ -39,14 +96,20 @@ public class ChatServer {
             int port = config.getServerPort();
             String host = config.getServerHost();
 
-            serverSocket = new ServerSocket(port);
+            serverSocket = new ServerSocket(port,
+                    config.getIntProperty("server.accept.backlog", DEFAULT_ACCEPT_BACKLOG));
             isRunning = true;
+            context.getMetrics().register();
+            if (context.getCluster() != null) {
+                context.getCluster().start();
+            }
 
             logger.logSystem("Server started on " + host + ":" + port);
             System.out.println("---------------------------------------");
             System.out.println("   NETWORK CHAT SERVER");
             System.out.println("---------------------------------------");
             System.out.println("Server started on: " + host + ":" + port);
+            System.out.println("Mode: " + config.getServerMode());
             System.out.println("Log file: " + config.getFullLogPath());
             System.out.println("Waiting for connections...");
             System.out.println("_______________________________________");
@@ -73,14 +136,8 @@ public class ChatServer {
                     // Слушаем входящие подключения
                     Socket clientSocket = serverSocket.accept();
 
-                    // Создаем обработчик клиента и запускаем его в отдельном потоке
-                    ClientHandler clientHandler = new ClientHandler(
-                            clientSocket,
-                            clientPool,
-                            logger
-                    );
-
-                    threadPool.execute(clientHandler);
+                    // Обработчик создается уже в потоке пула: поток accept сразу возвращается к приему
+                    threadPool.execute(() -> new ClientHandler(clientSocket, context).run());
 
                 } catch (SocketException e) {
                     // Нормальное завершение при shutdown
@@ -99,6 +156,9 @@ public class ChatServer {
     //Корректно завершить работу сервера
 
     public void shutdown() {
+        if (!stopped.compareAndSet(false, true)) {
+            return;
+        }
         System.out.println("\n[Server] Shutting down...");
         logger.logSystem("Server shutting down");
 
@@ -118,8 +178,15 @@ public class ChatServer {
             if (!threadPool.awaitTermination(5, TimeUnit.SECONDS)) {
                 threadPool.shutdownNow();
             }
+            writerPool.shutdown();
+            context.shutdown();
+            if (history != null) {
+                history.close();
+            }
 
+            context.getMetrics().unregister();
             logger.logSystem("Server stopped");
+            logger.close();
             System.out.println("[Server] Shutdown complete");
 
         } catch (Exception e) {
@@ -132,6 +199,7 @@ public class ChatServer {
     public String getServerInfo() {
         return "ChatServer{" +
                 "port=" + config.getServerPort() +
+                ", mode=" + config.getServerMode() +
                 ", activeClients=" + clientPool.getClientCount() +
                 ", isRunning=" + isRunning +
                 '}';
@@ -140,7 +208,17 @@ public class ChatServer {
     //Точка входа
 
     public static void main(String[] args) {
-        ChatServer server = new ChatServer();
+        ConfigLoader config = new ConfigLoader();
+
+        // Движок выбирается параметром server.mode в settings.txt
+        if ("nio".equals(config.getServerMode())) {
+            NioChatServer nioServer = new NioChatServer(config);
+            Runtime.getRuntime().addShutdownHook(new Thread(nioServer::shutdown));
+            nioServer.start();
+            return;
+        }
+
+        ChatServer server = new ChatServer(config);
 
         // Добавляем shutdown hook для корректного завершения при Ctrl+C
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
@@ -1,69 +1,133 @@
 package com.chat.server;
 
+import com.chat.model.BinaryCodec;
+import com.chat.model.FrameDecoder;
 import com.chat.model.Message;
+import com.chat.model.MessageReader;
+import com.chat.server.history.MessageStore;
+import com.chat.util.BufferPool;
 import com.chat.util.ChatLogger;
+import com.chat.util.HashedWheelTimer;
+import com.chat.util.TokenBucket;
 
 import java.io.*;
+import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 //Обработчик подключенного клиента (работает в отдельном потоке)
+//Логика протокола вынесена в handleMessage(), чтобы ее могли переиспользовать другие движки сервера
+//Исходящие сообщения только ставятся в собственную ограниченную очередь клиента,
+//запись в сокет выполняет писатель, поэтому медленный клиент не тормозит рассылку
+//Писатель склеивает накопившиеся кадры в буфере и отправляет их одной записью в сокет
+//Молчащему клиенту сервер шлет PING; не ответившего отключает (проверки - в общем HashedWheelTimer)
+//Частота сообщений ограничена ведрами токенов пользователя и его адреса (FloodGuard)
 
 public class ClientHandler implements Runnable {
+    private static final int WRITE_BUFFER_SIZE = 8192;
+    // Ответ на PING; PING без него - запрос, на который нужно ответить
+    public static final String PONG = "pong";
+    private static final Frame PING_FRAME = Frame.of(new Message(Message.MessageType.PING, null, null, null));
+    private static final Frame PONG_FRAME = Frame.of(new Message(Message.MessageType.PING, null, PONG, null));
+    private static final Frame THROTTLED_FRAME = Frame.of(new Message(Message.MessageType.SYSTEM, "SERVER",
+            "You are sending messages too fast, some of them were dropped"));
+    // Пауза без отброшенных сообщений, после которой всплеск считается законченным
+    private static final long FLOOD_QUIET_NANOS = 10_000_000_000L;
+
     private Socket socket;
-    private ClientPool clientPool;
-    private ChatLogger logger;
+    protected ClientPool clientPool;
+    protected ChatLogger logger;
+    protected final MessageStore history;
+    protected final RoomRegistry rooms;
+    protected final Roster roster;
+    protected final ServerMetrics metrics;
+    private final ServerContext context;
+    // Узел кластера: рассылки комнат и список пользователей уходят соседним серверам (null - без кластера)
+    private final ClusterNode cluster;
+    protected final OutboundQueue outbound;
+    private final Executor writerPool;
     private String username;
-    private PrintWriter out;
-    private BufferedReader in;
+    // Комнаты, в которых состоит клиент (меняются только в его потоке обработки)
+    private final Set<String> joinedRooms = ConcurrentHashMap.newKeySet();
+    private volatile OutputStream out;
     private volatile boolean isConnected = true;
 
-    public ClientHandler(Socket socket, ClientPool clientPool, ChatLogger logger) {
+    // Разбор входящих кадров; после CONNECT может переключиться на двоичный протокол
+    protected final FrameDecoder decoder = new FrameDecoder();
+    private volatile boolean binaryProtocol = false;
+    // Закрыть соединение, как только исходящая очередь будет записана
+    protected volatile boolean closeWhenFlushed = false;
+
+    // Буфер писателя: кадры общие и только для чтения, поэтому копируем их по частям
+    // Берется из пула на время опустошения очереди, молчащее соединение буфера не держит
+    private final BufferPool writeBuffers;
+    private ByteBuffer writeBuffer;
+    private int writeBufferLength = 0;
+    private int bufferedFrames = 0;
+    // Пауза писателя перед записью, чтобы в очереди накопилось больше кадров
+    protected final long flushDelayNanos;
+
+    // Гарантирует, что очередь опустошает только один писатель
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    // Проверка простоя: время последнего входящего сообщения и отправленного PING (0 - не отправлен)
+    private final HashedWheelTimer heartbeatTimer;
+    private final long heartbeatIntervalMillis;
+    private final long heartbeatTimeoutMillis;
+    private volatile long lastReadNanos = System.nanoTime();
+    private volatile long pingSentNanos = 0;
+    private volatile HashedWheelTimer.Timeout idleCheck;
+
+    // Ограничение частоты (null - выключено); поля меняются только в потоке обработки клиента
+    private final FloodGuard floodGuard;
+    private TokenBucket userBucket;
+    private TokenBucket addressBucket;
+    private InetAddress address;
+    private int throttled = 0;
+    private long lastThrottledNanos;
+
+    public ClientHandler(Socket socket, ServerContext context) {
         this.socket = socket;
-        this.clientPool = clientPool;
-        this.logger = logger;
+        this.clientPool = context.getClientPool();
+        this.logger = context.getLogger();
+        this.writerPool = context.getWriterPool();
+        this.history = context.getHistory();
+        this.rooms = context.getRooms();
+        this.roster = context.getRoster();
+        this.metrics = context.getMetrics();
+        this.context = context;
+        decoder.setDecodeTimer(metrics::recordDecode);
+        decoder.setMaxFrameBytes(context.getMaxFrameBytes());
+        decoder.setOversizedListener(this::rejectOversized);
+        this.outbound = context.newOutboundQueue();
+        this.flushDelayNanos = context.getFlushDelayNanos();
+        this.heartbeatTimer = context.getHeartbeatTimer();
+        this.heartbeatIntervalMillis = context.getHeartbeatIntervalMillis();
+        this.heartbeatTimeoutMillis = context.getHeartbeatTimeoutMillis();
+        this.floodGuard = context.getFloodGuard();
+        this.writeBuffers = context.getWriteBuffers();
+        this.cluster = context.getCluster();
     }
 
     @Override
     public void run() {
         try {
             // Инициализируем потоки ввода-вывода
-            out = new PrintWriter(socket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-            // Ждем сообщения CONNECT с именем пользователя
-            String firstMessage = in.readLine();
-            if (firstMessage != null) {
-                Message msg = Message.fromJson(firstMessage);
-
-                if (msg.getType() == Message.MessageType.CONNECT) {
-                    this.username = msg.getUsername();
-
-                    // Добавляем клиента в пул
-                    clientPool.addClient(username, this);
-                    logger.logConnected(username);
-
-                    System.out.println("[Server] User connected: " + username);
-
-                    // Отправляем подтверждение и список пользователей
-                    sendUserList();
-
-                    // Транслируем сообщение о подключении всем клиентам
-                    broadcastMessage(msg);
-
-                    // Читаем сообщения от клиента
-                    String line;
-                    while ((line = in.readLine()) != null && isConnected) {
-                        Message incomingMsg = Message.fromJson(line);
-
-                        if (incomingMsg.getType() == Message.MessageType.DISCONNECT) {
-                            handleDisconnect();
-                            break;
-                        } else if (incomingMsg.getType() == Message.MessageType.MESSAGE) {
-                            logger.logMessage(username, incomingMsg.getContent());
-                            broadcastMessage(incomingMsg);
-                        }
-                    }
+            out = socket.getOutputStream();
+            MessageReader reader = new MessageReader(socket.getInputStream(), decoder);
+            startHeartbeat();
+
+            // Читаем сообщения от клиента (первым должно прийти CONNECT)
+            Message msg;
+            while (isConnected && (msg = reader.read()) != null) {
+                if (!handleMessage(msg)) {
+                    break;
                 }
             }
 
@@ -74,75 +138,493 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    //Обработка одного входящего сообщения
+    //Возвращает false, если соединение нужно завершить
+
+    protected boolean handleMessage(Message msg) {
+        metrics.messageReceived();
+        long now = System.nanoTime();
+        lastReadNanos = now;
+
+        if (msg.getType() == Message.MessageType.PING) {
+            if (!PONG.equals(msg.getContent())) {
+                sendFrame(PONG_FRAME);
+            }
+            return true;
+        }
+
+        // Ждем сообщения CONNECT с именем пользователя
+        if (username == null) {
+            if (msg.getType() != Message.MessageType.CONNECT) {
+                return false;
+            }
+            // Клиент предложил двоичный протокол: подтверждаем в JSON и переключаемся.
+            // До попадания в пул: иначе рассылка из другого потока может поставить
+            // JSON-кадр раньше подтверждения, а клиент ждет подтверждение первым
+            if (BinaryCodec.PROTOCOL.equals(msg.getProtocol())) {
+                acceptBinaryProtocol();
+                msg.setProtocol(null);
+            }
+
+            // Имя занимается атомарно; занятое имя не трогает ни пул, ни комнаты
+            if (!clientPool.addClient(msg.getUsername(), this)) {
+                System.out.println("[Server] Username already taken: " + msg.getUsername());
+                // Уведомление дописывается в сокет, после чего соединение закрывается
+                closeWhenFlushed = true;
+                sendMessage(new Message(Message.MessageType.SYSTEM, "SERVER",
+                        "Username " + msg.getUsername() + " is already taken"));
+                return true;
+            }
+            this.username = msg.getUsername();
+
+            // Лимиты частоты: свой у пользователя и общий у всех подключений с его адреса
+            userBucket = floodGuard.newUserBucket();
+            address = remoteAddress();
+            addressBucket = floodGuard.acquireAddress(address);
+
+            metrics.connectionOpened();
+            logger.logConnected(username);
+
+            System.out.println("[Server] User connected: " + username);
+
+            // Отправляем первую страницу списка пользователей; вход в общую комнату
+            // ставит в очередь и ее последние сообщения (см. Room.add)
+            roster.sendPage(this, 0);
+            rooms.join(RoomRegistry.DEFAULT_ROOM, this);
+
+            // О подключении все узнают из ближайшего PRESENCE
+            roster.userJoined(username);
+            if (cluster != null) {
+                cluster.userJoined(username);
+            }
+            return true;
+        }
+
+        if (msg.getType() == Message.MessageType.DISCONNECT) {
+            handleDisconnect();
+            return false;
+        }
+
+        // Сообщения, которые рассылаются другим, проходят ограничение частоты
+        if (isRateLimited(msg.getType()) && !tryAcquire(now)) {
+            int limit = floodGuard.getDisconnectAfter();
+            if (limit > 0 && throttled >= limit) {
+                System.out.println("[Server] Disconnecting flooding client: " + username);
+                metrics.floodDisconnect();
+                return false;
+            }
+            return true;
+        }
+
+        if (msg.getType() == Message.MessageType.USER_LIST) {
+            // Запрос страницы списка: content - смещение первого пользователя
+            roster.sendPage(this, parseOffset(msg.getContent()));
+        } else if (msg.getType() == Message.MessageType.JOIN) {
+            handleJoin(msg);
+        } else if (msg.getType() == Message.MessageType.LEAVE) {
+            handleLeave(msg);
+        } else if (msg.getType() == Message.MessageType.MESSAGE) {
+            if (handleCommand(msg.getContent())) {
+                return true;
+            }
+
+            // Писать можно только в комнату, в которой состоишь
+            String roomName = RoomRegistry.roomName(msg.getRoom());
+            Room room = joinedRooms.contains(roomName) ? rooms.getRoom(roomName) : null;
+            if (room == null) {
+                sendSystemMessage("You are not in room " + roomName);
+                return true;
+            }
+
+            long logStart = System.nanoTime();
+            logger.logMessage(username, msg.getContent());
+            metrics.recordLogWrite(System.nanoTime() - logStart);
+            appendHistory(msg);
+
+            // Кадр рассылки сразу попадает в кольцо последних сообщений комнаты
+            Frame frame = Frame.of(msg);
+            long broadcastStart = System.nanoTime();
+            int recipients = room.publish(frame);
+            metrics.recordBroadcast(System.nanoTime() - broadcastStart, recipients);
+            if (cluster != null) {
+                cluster.relay(frame);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isRateLimited(Message.MessageType type) {
+        return type == Message.MessageType.MESSAGE
+                || type == Message.MessageType.JOIN
+                || type == Message.MessageType.LEAVE;
+    }
+
+    //Взять токен у ведра пользователя и ведра адреса; false - сообщение отбрасывается
+    //Об отброшенных сообщениях клиент узнает один раз за всплеск, чтобы ответы не стали новым флудом
+
+    private boolean tryAcquire(long now) {
+        if (FloodGuard.tryAcquire(userBucket, addressBucket, now)) {
+            if (throttled > 0 && now - lastThrottledNanos > FLOOD_QUIET_NANOS) {
+                throttled = 0;
+            }
+            return true;
+        }
+        metrics.messageThrottled();
+        lastThrottledNanos = now;
+        if (throttled++ == 0) {
+            sendFrame(THROTTLED_FRAME);
+        }
+        return false;
+    }
+
+    //Адрес клиента для лимита частоты (null - неизвестен)
+
+    protected InetAddress remoteAddress() {
+        return socket != null ? socket.getInetAddress() : null;
+    }
+
+    //Вход в комнату: участники получают JOIN, вошедший - последние сообщения комнаты
+
+    private void handleJoin(Message msg) {
+        String roomName = RoomRegistry.roomName(msg.getRoom());
+        switch (rooms.join(roomName, this)) {
+            case JOINED:
+                Room room = rooms.getRoom(roomName);
+                Message joined = new Message(Message.MessageType.JOIN, username, "Joined " + roomName);
+                joined.setRoom(msg.getRoom());
+                broadcastToRoom(room, Frame.of(joined));
+                break;
+            case ALREADY_MEMBER:
+                sendSystemMessage("You are already in room " + roomName);
+                break;
+            case ROOM_FULL:
+                sendSystemMessage("Room " + roomName + " is full");
+                break;
+            case TOO_MANY_ROOMS:
+                sendSystemMessage("Too many rooms, leave one first");
+                break;
+            default:
+                sendSystemMessage("Invalid room name: " + roomName);
+        }
+    }
+
+    //Выход из комнаты: LEAVE получают участники, включая вышедшего
+
+    private void handleLeave(Message msg) {
+        String roomName = RoomRegistry.roomName(msg.getRoom());
+        Room room = joinedRooms.contains(roomName) ? rooms.getRoom(roomName) : null;
+        if (room == null) {
+            sendSystemMessage("You are not in room " + roomName);
+            return;
+        }
+        Message left = new Message(Message.MessageType.LEAVE, username, "Left " + roomName);
+        left.setRoom(msg.getRoom());
+        broadcastToRoom(room, Frame.of(left));
+        rooms.leave(roomName, this);
+    }
+
+    //Сообщение длиннее max.frame.bytes пропущено декодером: соединение остается, отправитель получает уведомление
+
+    private void rejectOversized(int size) {
+        metrics.oversizedFrame();
+        sendSystemMessage("Message rejected: " + size + " bytes exceeds the limit of "
+                + decoder.getMaxFrameBytes() + " bytes");
+    }
+
+    //Рассылка участникам комнаты на этом узле и на остальных узлах кластера
+
+    private void broadcastToRoom(Room room, Frame frame) {
+        room.broadcastFrame(frame);
+        if (cluster != null) {
+            cluster.relay(frame);
+        }
+    }
+
+    private void sendSystemMessage(String text) {
+        sendMessage(new Message(Message.MessageType.SYSTEM, "SERVER", text));
+    }
+
+    //Служебные команды; true - сообщение обработано и не рассылается
+
+    private boolean handleCommand(String content) {
+        if (content == null || !content.startsWith("/")) {
+            return false;
+        }
+        if (content.trim().equals("/stats")) {
+            String text = context.isAdmin(username, address)
+                    ? metrics.format()
+                    : "/stats is available to administrators only";
+            sendSystemMessage(text);
+            return true;
+        }
+        return false;
+    }
+
+    private void acceptBinaryProtocol() {
+        Message ack = new Message(
+                Message.MessageType.SYSTEM,
+                "SERVER",
+                "Protocol: " + BinaryCodec.PROTOCOL
+        );
+        ack.setProtocol(BinaryCodec.PROTOCOL);
+        sendMessage(ack);
+
+        // Все следующие кадры в обе стороны - двоичные
+        binaryProtocol = true;
+        decoder.setBinary(true);
+    }
+
     //Обработка отключения клиента
 
-    private void handleDisconnect() {
+    protected void handleDisconnect() {
         if (!isConnected) return;
 
         isConnected = false;
+        HashedWheelTimer.Timeout check = idleCheck;
+        if (check != null) {
+            check.cancel();
+        }
+        // Кадры отключенному клиенту больше не нужны
+        outbound.clear();
 
         try {
-            // Удаляем клиента из пула
-            clientPool.removeClient(username);
-            logger.logDisconnected(username);
-
-            System.out.println("[Server] User disconnected: " + username);
-
-            // Транслируем сообщение об отключении
-            Message disconnectMsg = new Message(
-                    Message.MessageType.DISCONNECT,
-                    username,
-                    "User has left the chat"
-            );
-            broadcastMessage(disconnectMsg);
+            // Клиент, не приславший CONNECT, в пул не попадал
+            if (username != null) {
+                // Удаляем клиента из пула
+                clientPool.removeClient(username, this);
+                rooms.leaveAll(this);
+                metrics.connectionClosed();
+                logger.logDisconnected(username);
+
+                System.out.println("[Server] User disconnected: " + username);
+
+                // Об отключении все узнают из ближайшего PRESENCE
+                roster.userLeft(username);
+                if (cluster != null) {
+                    cluster.userLeft(username);
+                }
+                if (addressBucket != null) {
+                    floodGuard.releaseAddress(address);
+                }
+            }
 
             // Закрываем соединение
-            if (socket != null && !socket.isClosed()) {
-                socket.close();
-            }
+            closeConnection();
         } catch (IOException e) {
             System.err.println("Error closing connection: " + e.getMessage());
         }
     }
 
-    //Отправить сообщение клиенту
+    //Запустить проверку простоя соединения (heartbeat.interval == 0 - выключена)
 
-    public synchronized void sendMessage(String jsonMessage) {
-        if (isConnected && out != null) {
-            out.println(jsonMessage);
-            out.flush();
+    protected void startHeartbeat() {
+        lastReadNanos = System.nanoTime();
+        if (heartbeatTimer != null) {
+            scheduleIdleCheck(heartbeatIntervalMillis);
         }
     }
 
-    //Отправить сообщение Object
+    private void scheduleIdleCheck(long delayMillis) {
+        if (isConnected) {
+            idleCheck = heartbeatTimer.schedule(this::checkIdle, delayMillis);
+        }
+    }
 
-    public void sendMessage(Message message) {
-        sendMessage(message.toJson());
+    //Поток таймера: клиент молчит heartbeat.interval - шлем PING,
+    //не ответил за heartbeat.timeout - отключаем. Входящие сообщения таймер не трогают:
+    //следующая проверка просто переносится на остаток интервала
+
+    private void checkIdle() {
+        if (!isConnected) {
+            return;
+        }
+        long now = System.nanoTime();
+        long pingSent = pingSentNanos;
+        if (pingSent != 0 && lastReadNanos - pingSent < 0) {
+            long waited = (now - pingSent) / 1_000_000;
+            if (waited >= heartbeatTimeoutMillis) {
+                System.out.println("[Server] Closing idle connection: " + username);
+                metrics.idleDisconnect();
+                requestDisconnect();
+            } else {
+                scheduleIdleCheck(heartbeatTimeoutMillis - waited);
+            }
+            return;
+        }
+
+        long idle = (now - lastReadNanos) / 1_000_000;
+        if (idle >= heartbeatIntervalMillis) {
+            pingSentNanos = now;
+            sendFrame(PING_FRAME);
+            scheduleIdleCheck(heartbeatTimeoutMillis);
+        } else {
+            pingSentNanos = 0;
+            scheduleIdleCheck(heartbeatIntervalMillis - idle);
+        }
+    }
+
+    //Закрыть транспорт клиента
+
+    protected void closeConnection() throws IOException {
+        if (socket != null && !socket.isClosed()) {
+            socket.close();
+        }
+    }
+
+    //Отправить сообщение клиенту (ставит кадр в очередь, можно вызывать из любого потока)
+
+    public void sendMessage(String jsonMessage) {
+        sendFrame(Frame.ofJson(jsonMessage));
+    }
+
+    //Отправить уже закодированный кадр (при рассылке он общий для всех получателей)
+
+    public void sendFrame(Frame frame) {
+        if (!isConnected) {
+            return;
+        }
+        if (!outbound.offer(frame.buffer(binaryProtocol), frame.isControl())) {
+            System.err.println("[Server] Outbound queue overflow, disconnecting: " + username);
+            metrics.overflowDisconnect();
+            requestDisconnect();
+            return;
+        }
+        scheduleFlush();
     }
 
-    //Рассылка сообщения всем клиентам
+    //Запустить писателя, если он еще не работает
 
-    private void broadcastMessage(Message message) {
-        clientPool.broadcastMessage(message);
+    protected void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        if (writerPool == null) {
+            drainOutbound();
+            return;
+        }
+        try {
+            writerPool.execute(this::drainOutbound);
+        } catch (RejectedExecutionException e) {
+            // Сервер останавливается
+            flushScheduled.set(false);
+        }
     }
 
+    //Писатель: отправляет все накопленные кадры в сокет
 
-    private void sendUserList() {
-        List<String> users = clientPool.getActiveUsers();
-        StringBuilder userList = new StringBuilder();
-        for (String user : users) {
-            if (!userList.toString().isEmpty()) {
-                userList.append(", ");
+    private void drainOutbound() {
+        do {
+            // Без пула писателей очередь опустошает рассылающий поток - его не задерживаем
+            if (flushDelayNanos > 0 && writerPool != null) {
+                LockSupport.parkNanos(flushDelayNanos);
             }
-            userList.append(user);
+            try {
+                ByteBuffer frame;
+                while ((frame = outbound.poll()) != null) {
+                    bufferFrame(frame);
+                }
+                flushWriteBuffer();
+            } catch (IOException e) {
+                outbound.clear();
+                writeBufferLength = 0;
+                bufferedFrames = 0;
+                requestDisconnect();
+            }
+            // Буфер возвращается до сброса флага: следующий писатель возьмет свой
+            writeBuffers.release(writeBuffer);
+            writeBuffer = null;
+            flushScheduled.set(false);
+            // Кадр мог прийти между последним poll() и сбросом флага
+        } while (!outbound.isEmpty() && isConnected && flushScheduled.compareAndSet(false, true));
+        if (closeWhenFlushed && outbound.isEmpty()) {
+            requestDisconnect();
         }
+    }
 
-        Message userListMsg = new Message(
-                Message.MessageType.USER_LIST,
-                "SERVER",
-                "Active users: " + userList.toString()
-        );
-        sendMessage(userListMsg);
+    //Скопировать кадр в буфер писателя; заполненный буфер уходит в сокет
+
+    private void bufferFrame(ByteBuffer frame) throws IOException {
+        if (out == null || !isConnected) {
+            return;
+        }
+        if (writeBuffer == null) {
+            writeBuffer = writeBuffers.acquire(WRITE_BUFFER_SIZE);
+        }
+        byte[] buffer = writeBuffer.array();
+        while (frame.hasRemaining()) {
+            if (writeBufferLength == buffer.length) {
+                flushWriteBuffer();
+            }
+            int length = Math.min(frame.remaining(), buffer.length - writeBufferLength);
+            frame.get(buffer, writeBufferLength, length);
+            writeBufferLength += length;
+        }
+        bufferedFrames++;
+    }
+
+    private void flushWriteBuffer() throws IOException {
+        OutputStream stream = out;
+        if (writeBufferLength == 0 || stream == null) {
+            return;
+        }
+        stream.write(writeBuffer.array(), 0, writeBufferLength);
+        stream.flush();
+        metrics.recordSocketWrite(bufferedFrames);
+        writeBufferLength = 0;
+        bufferedFrames = 0;
+    }
+
+    //Разорвать соединение из чужого потока: поток чтения получит ошибку и выполнит handleDisconnect()
+
+    protected void requestDisconnect() {
+        try {
+            closeConnection();
+        } catch (IOException e) {
+            System.err.println("Error closing connection: " + e.getMessage());
+        }
+    }
+
+    //Отправить сообщение Object
+
+    public void sendMessage(Message message) {
+        sendFrame(Frame.of(message));
+    }
+
+    //Сохранить сообщение в историю перед рассылкой
+
+    private void appendHistory(Message message) {
+        if (history == null) {
+            return;
+        }
+        Executor historyWriter = context.getHistoryWriter();
+        if (historyWriter == null) {
+            writeHistory(message);
+            return;
+        }
+        try {
+            historyWriter.execute(() -> writeHistory(message));
+        } catch (RejectedExecutionException e) {
+            // Сервер останавливается, история уже закрывается
+        }
+    }
+
+    private void writeHistory(Message message) {
+        try {
+            history.append(message);
+        } catch (IOException e) {
+            System.err.println("Error writing message history: " + e.getMessage());
+        }
+    }
+
+    private static int parseOffset(String content) {
+        if (content == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(content.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 
     public String getUsername() {
@@ -152,4 +634,18 @@ public class ClientHandler implements Runnable {
     public boolean isConnected() {
         return isConnected;
     }
-}
\ No newline at end of file
+
+    //Комнаты клиента (изменяет RoomRegistry)
+
+    Set<String> getRooms() {
+        return joinedRooms;
+    }
+
+    public int getOutboundQueueSize() {
+        return outbound.size();
+    }
+
+    public boolean isBinaryProtocol() {
+        return binaryProtocol;
+    }
+}
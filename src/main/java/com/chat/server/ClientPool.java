@@ -4,22 +4,46 @@ import com.chat.model.Message;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 //Пул клиентов - управление всеми подключенными клиентами
+//Имена занимаются атомарно (putIfAbsent), блокировок нет. Для рассылки пул публикует
+//неизменяемый массив обработчиков: он пересобирается лениво, при первой рассылке после
+//входа или выхода, поэтому всплеск подключений не копирует массив на каждое изменение,
+//а рассылка идет по массиву без итераторов
 
 public class ClientPool {
-    private Map<String, ClientHandler> clients = new ConcurrentHashMap<>();
+    private static final ClientHandler[] NO_CLIENTS = new ClientHandler[0];
 
-    public synchronized void addClient(String username, ClientHandler handler) {
-        clients.put(username, handler);
-        System.out.println("[ClientPool] Added client: " + username +
-                " (Total: " + clients.size() + ")");
+    private final Map<String, ClientHandler> clients = new ConcurrentHashMap<>();
+    // Номер изменения состава; снимок с другим номером устарел
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(0, NO_CLIENTS);
+
+    //Занять имя; false - имя уже занято другим подключением
+
+    public boolean addClient(String username, ClientHandler handler) {
+        if (clients.putIfAbsent(username, handler) != null) {
+            return false;
+        }
+        version.incrementAndGet();
+        return true;
     }
 
-    public synchronized void removeClient(String username) {
-        clients.remove(username);
-        System.out.println("[ClientPool] Removed client: " + username +
-                " (Total: " + clients.size() + ")");
+    public void removeClient(String username) {
+        if (clients.remove(username) != null) {
+            version.incrementAndGet();
+        }
+    }
+
+    //Освободить имя, только если его занимает именно этот обработчик
+
+    public boolean removeClient(String username, ClientHandler handler) {
+        if (!clients.remove(username, handler)) {
+            return false;
+        }
+        version.incrementAndGet();
+        return true;
     }
 
     public ClientHandler getClient(String username) {
@@ -40,18 +64,24 @@ public class ClientPool {
     }
 
 
+    //Сообщение кодируется один раз, всем получателям уходит один и тот же кадр
+
     public void broadcastMessage(Message message) {
-        for (ClientHandler client : clients.values()) {
-            if (client.isConnected()) {
-                client.sendMessage(message);
-            }
-        }
+        broadcastFrame(Frame.of(message));
+    }
+
+    //Возвращает число получателей
+
+    public int broadcastFrame(Frame frame) {
+        return FanOut.SERIAL.send(snapshot(), frame);
     }
 
     public void broadcastMessageExcept(Message message, String excludeUsername) {
-        for (Map.Entry<String, ClientHandler> entry : clients.entrySet()) {
-            if (!entry.getKey().equals(excludeUsername) && entry.getValue().isConnected()) {
-                entry.getValue().sendMessage(message);
+        Frame frame = Frame.of(message);
+        ClientHandler excluded = clients.get(excludeUsername);
+        for (ClientHandler client : snapshot()) {
+            if (client != excluded && client.isConnected()) {
+                client.sendFrame(frame);
             }
         }
     }
@@ -65,11 +95,47 @@ public class ClientPool {
         return false;
     }
 
+    //Суммарное число кадров, ожидающих отправки во всех исходящих очередях
+
+    public long getOutboundQueueDepth() {
+        long depth = 0;
+        for (ClientHandler client : snapshot()) {
+            depth += client.getOutboundQueueSize();
+        }
+        return depth;
+    }
+
     public void clear() {
         clients.clear();
+        version.incrementAndGet();
     }
 
     public String getPoolInfo() {
         return "ClientPool{size=" + clients.size() + ", clients=" + clients.keySet() + "}";
     }
-}
\ No newline at end of file
+
+    //Текущий массив клиентов. Номер читается до обхода карты: изменения до него
+    //уже видны в карте, а изменение во время обхода оставит снимок устаревшим,
+    //и следующая рассылка пересоберет его еще раз
+
+    ClientHandler[] snapshot() {
+        Snapshot current = snapshot;
+        long expected = version.get();
+        if (current.version == expected) {
+            return current.clients;
+        }
+        ClientHandler[] rebuilt = clients.values().toArray(NO_CLIENTS);
+        snapshot = new Snapshot(expected, rebuilt);
+        return rebuilt;
+    }
+
+    private static final class Snapshot {
+        private final long version;
+        private final ClientHandler[] clients;
+
+        private Snapshot(long version, ClientHandler[] clients) {
+            this.version = version;
+            this.clients = clients;
+        }
+    }
+}
@@ -0,0 +1,577 @@
+package com.chat.server;
+
+import com.chat.model.BinaryCodec;
+import com.chat.model.FrameDecoder;
+import com.chat.model.Message;
+import com.chat.model.MessageReader;
+import com.chat.server.history.MessageStore;
+import com.chat.util.ConfigLoader;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Узел кластера: несколько серверов с общим чатом
+//
+//Каждый узел держит своих клиентов, а рассылки комнат и изменения списка пользователей
+//пересылает остальным узлам по постоянным соединениям. Соединения однонаправленные:
+//узел сам подключается к каждому узлу из cluster.peers и только пишет в это соединение,
+//а из принятых соединений только читает. Поэтому не нужно решать, чье соединение главное,
+//а порядок сообщений одного узла сохраняется.
+//
+//Узлы говорят на обычном протоколе чата (CONNECT с именем узла, дальше двоичные кадры):
+//  MESSAGE/JOIN/LEAVE - рассылка в комнату, уже закодированный кадр отправляется как есть
+//  USER_LIST          - полный список пользователей узла (после каждого подключения)
+//  PRESENCE           - изменения списка ("+name", "-name")
+//  PING               - признак жизни, когда пересылать нечего
+//Пересланное сообщение дальше не пересылается: все узлы связаны напрямую.
+//Соединение, молчащее cluster.link.timeout, считается разорванным - пользователи узла удаляются.
+//Если задан cluster.secret, узел принимает только соединения, приславшие его в CONNECT
+
+public class ClusterNode {
+    private static final long DEFAULT_LINK_TIMEOUT_MS = 6_000;
+    private static final int LINK_QUEUE_CAPACITY = 16 * 1024;
+    private static final int MAX_GATHER_FRAMES = 64;
+    private static final long MAX_RECONNECT_DELAY_MS = 5_000;
+    // Сколько shutdown() ждет завершения потоков узла
+    private static final long SHUTDOWN_WAIT_MS = 2_000;
+    private static final Frame PING_FRAME = Frame.of(new Message(Message.MessageType.PING, null, null, null));
+
+    private final String nodeId;
+    private final String bindHost;
+    private final int port;
+    private final String secret;
+    private final long linkTimeoutMillis;
+    private final RoomRegistry rooms;
+    private final Roster roster;
+    private final MessageStore history;
+
+    // Пользователи этого узла - отправляются новому соединению целиком
+    private final Set<String> localUsers = ConcurrentHashMap.newKeySet();
+    // Пользователи других узлов и принятые от них соединения (по имени узла)
+    private final ConcurrentHashMap<String, Set<String>> remoteUsers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, InboundLink> inbound = new ConcurrentHashMap<>();
+    private final List<PeerLink> peers = new CopyOnWriteArrayList<>();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    // Все принятые соединения (и до CONNECT) и все запущенные потоки - для shutdown()
+    private final Set<InboundLink> accepted = ConcurrentHashMap.newKeySet();
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+    private ServerSocket serverSocket;
+    private volatile boolean isRunning = false;
+
+    public ClusterNode(String nodeId, int port, long linkTimeoutMillis,
+                       RoomRegistry rooms, Roster roster, MessageStore history) {
+        this(nodeId, null, port, null, linkTimeoutMillis, rooms, roster, history);
+    }
+
+    //bindHost == null - порт открыт на всех интерфейсах, secret == null - соседи не проверяются
+
+    public ClusterNode(String nodeId, String bindHost, int port, String secret, long linkTimeoutMillis,
+                       RoomRegistry rooms, Roster roster, MessageStore history) {
+        this.nodeId = nodeId;
+        this.bindHost = bindHost;
+        this.port = port;
+        this.secret = secret;
+        this.linkTimeoutMillis = Math.max(100, linkTimeoutMillis);
+        this.rooms = rooms;
+        this.roster = roster;
+        this.history = history;
+    }
+
+    //Узел по настройкам или null, если cluster.port не задан
+
+    public static ClusterNode create(ConfigLoader config, RoomRegistry rooms, Roster roster, MessageStore history) {
+        int port = config.getIntProperty("cluster.port", 0);
+        if (port <= 0) {
+            return null;
+        }
+        ClusterNode node = new ClusterNode(
+                config.getProperty("cluster.node.id", "node-" + port),
+                emptyToNull(config.getProperty("cluster.bind")),
+                port,
+                emptyToNull(config.getProperty("cluster.secret")),
+                config.getDurationProperty("cluster.link.timeout", DEFAULT_LINK_TIMEOUT_MS),
+                rooms, roster, history
+        );
+        for (String peer : config.getProperty("cluster.peers", "").split(",")) {
+            InetSocketAddress address = parseAddress(peer.trim());
+            if (address != null) {
+                node.peers.add(node.new PeerLink(address));
+            }
+        }
+        return node;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static InetSocketAddress parseAddress(String value) {
+        int colon = value.lastIndexOf(':');
+        if (colon <= 0) {
+            if (!value.isEmpty()) {
+                System.err.println("[Cluster] Invalid peer address (host:port expected): " + value);
+            }
+            return null;
+        }
+        try {
+            return InetSocketAddress.createUnresolved(value.substring(0, colon),
+                    Integer.parseInt(value.substring(colon + 1)));
+        } catch (IllegalArgumentException e) {
+            System.err.println("[Cluster] Invalid peer address: " + value);
+            return null;
+        }
+    }
+
+    //Открыть порт для соседей и начать подключаться к ним
+
+    public void start() throws IOException {
+        // Перезапущенный узел занимает тот же порт, пока старые соединения в TIME_WAIT
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(bindHost != null ? new InetSocketAddress(bindHost, port) : new InetSocketAddress(port));
+        isRunning = true;
+        startThread(this::acceptLinks, "Cluster-Acceptor");
+        for (PeerLink peer : peers) {
+            peer.start();
+        }
+        System.out.println("[Cluster] Node " + nodeId + " listening on port " + getLocalPort()
+                + ", peers: " + peers.size());
+    }
+
+    //Подключаться к еще одному узлу (после start)
+
+    void addPeer(InetSocketAddress address) {
+        PeerLink peer = new PeerLink(address);
+        peers.add(peer);
+        if (isRunning) {
+            peer.start();
+        }
+    }
+
+    public int getLocalPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : port;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    //Переслать кадр рассылки комнаты остальным узлам
+
+    public void relay(Frame frame) {
+        for (PeerLink peer : peers) {
+            peer.send(frame);
+        }
+    }
+
+    public void userJoined(String username) {
+        localUsers.add(username);
+        relay(Frame.of(new Message(Message.MessageType.PRESENCE, nodeId, "+" + username)));
+    }
+
+    public void userLeft(String username) {
+        localUsers.remove(username);
+        relay(Frame.of(new Message(Message.MessageType.PRESENCE, nodeId, "-" + username)));
+    }
+
+    //Узлы, от которых сейчас принято соединение
+
+    public int getConnectedNodes() {
+        return inbound.size();
+    }
+
+    //Кадры, отброшенные из-за переполненной очереди соединения с соседом
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    private void startThread(Runnable task, String name) {
+        Thread thread = new Thread(() -> {
+            try {
+                task.run();
+            } finally {
+                threads.remove(Thread.currentThread());
+            }
+        }, name);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+    }
+
+    //Закрыть порт и соединения и дождаться потоков узла
+
+    public void shutdown() {
+        isRunning = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            System.err.println("[Cluster] Error closing cluster port: " + e.getMessage());
+        }
+        for (PeerLink peer : peers) {
+            peer.close();
+        }
+        for (InboundLink link : accepted) {
+            link.close();
+        }
+
+        long deadline = System.currentTimeMillis() + SHUTDOWN_WAIT_MS;
+        for (Thread thread : threads) {
+            // Поток соединения к соседу может спать перед переподключением
+            thread.interrupt();
+            try {
+                thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void acceptLinks() {
+        while (isRunning) {
+            try {
+                Socket socket = serverSocket.accept();
+                InboundLink link = new InboundLink(socket);
+                accepted.add(link);
+                if (!isRunning) {
+                    // shutdown() уже закрыл принятые соединения
+                    link.close();
+                    accepted.remove(link);
+                    break;
+                }
+                startThread(link, "Cluster-Inbound");
+            } catch (IOException e) {
+                if (isRunning) {
+                    System.err.println("[Cluster] Accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    //Сообщение от соседнего узла (поток его соединения)
+
+    private void deliver(String node, Message message) {
+        // Неизвестный или пропущенный тип кодеки отдают как null
+        if (message.getType() == null) {
+            return;
+        }
+        switch (message.getType()) {
+            case MESSAGE:
+                if (history != null) {
+                    try {
+                        history.append(message);
+                    } catch (IOException e) {
+                        System.err.println("Error writing message history: " + e.getMessage());
+                    }
+                }
+                deliverToRoom(message, true);
+                break;
+            case JOIN:
+            case LEAVE:
+                deliverToRoom(message, false);
+                break;
+            case USER_LIST:
+                replaceUsers(node, message.getContent());
+                break;
+            case PRESENCE:
+                applyPresence(node, message.getContent());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void deliverToRoom(Message message, boolean remember) {
+        // Комнаты нет - на этом узле в ней никого нет
+        Room room = rooms.getRoom(RoomRegistry.roomName(message.getRoom()));
+        if (room == null) {
+            return;
+        }
+        Frame frame = Frame.of(message);
+        if (remember) {
+            room.publish(frame);
+        } else {
+            room.broadcastFrame(frame);
+        }
+    }
+
+    private void applyPresence(String node, String diff) {
+        if (diff == null) {
+            return;
+        }
+        Set<String> users = remoteUsers.computeIfAbsent(node, key -> ConcurrentHashMap.newKeySet());
+        for (String change : diff.split("\n")) {
+            if (change.length() < 2) {
+                continue;
+            }
+            String username = change.substring(1);
+            if (change.charAt(0) == '+') {
+                if (users.add(username)) {
+                    roster.userJoined(username);
+                }
+            } else if (change.charAt(0) == '-') {
+                if (users.remove(username)) {
+                    roster.userLeft(username);
+                }
+            }
+        }
+    }
+
+    //Полный список пользователей узла: недостающих удаляем, новых добавляем
+
+    private void replaceUsers(String node, String content) {
+        Set<String> current = new HashSet<>();
+        if (content != null && !content.isEmpty()) {
+            for (String username : content.split("\n")) {
+                current.add(username);
+            }
+        }
+        Set<String> users = remoteUsers.computeIfAbsent(node, key -> ConcurrentHashMap.newKeySet());
+        for (String username : new ArrayList<>(users)) {
+            if (!current.contains(username) && users.remove(username)) {
+                roster.userLeft(username);
+            }
+        }
+        for (String username : current) {
+            if (users.add(username)) {
+                roster.userJoined(username);
+            }
+        }
+    }
+
+    //Соединение с узлом разорвано: его пользователи покидают чат
+
+    private void dropNode(String node) {
+        Set<String> users = remoteUsers.remove(node);
+        if (users == null) {
+            return;
+        }
+        for (String username : users) {
+            roster.userLeft(username);
+        }
+        System.out.println("[Cluster] Node left: " + node + " (" + users.size() + " users)");
+    }
+
+    private boolean secretMatches(String offered) {
+        if (secret == null) {
+            return true;
+        }
+        return offered != null && MessageDigest.isEqual(
+                secret.getBytes(StandardCharsets.UTF_8), offered.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //Принятое соединение: только чтение сообщений узла
+
+    private final class InboundLink implements Runnable {
+        private final Socket socket;
+
+        InboundLink(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            String node = null;
+            try {
+                socket.setSoTimeout((int) linkTimeoutMillis);
+                FrameDecoder decoder = new FrameDecoder();
+                MessageReader reader = new MessageReader(socket.getInputStream(), decoder);
+
+                Message hello = reader.read();
+                if (hello == null || hello.getType() != Message.MessageType.CONNECT || hello.getUsername() == null) {
+                    return;
+                }
+                if (!secretMatches(hello.getContent())) {
+                    System.err.println("[Cluster] Rejected link from " + socket.getRemoteSocketAddress()
+                            + ": wrong cluster.secret");
+                    return;
+                }
+                node = hello.getUsername();
+                decoder.setBinary(BinaryCodec.PROTOCOL.equals(hello.getProtocol()));
+                // Узел переподключился: старое соединение больше не нужно
+                InboundLink previous = inbound.put(node, this);
+                if (previous != null) {
+                    previous.close();
+                }
+                System.out.println("[Cluster] Node connected: " + node);
+
+                Message message;
+                while (isRunning && (message = reader.read()) != null) {
+                    try {
+                        deliver(node, message);
+                    } catch (RuntimeException e) {
+                        // Один испорченный кадр не должен разрывать соединение и удалять пользователей узла
+                        System.err.println("[Cluster] Skipped bad frame from " + node + ": " + e);
+                    }
+                }
+            } catch (IOException e) {
+                if (isRunning) {
+                    System.err.println("[Cluster] Link from " + (node != null ? node : socket.getRemoteSocketAddress())
+                            + " failed: " + e.getMessage());
+                }
+            } finally {
+                close();
+                accepted.remove(this);
+                if (node != null && inbound.remove(node, this)) {
+                    dropNode(node);
+                }
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Соединение уже закрыто
+            }
+        }
+    }
+
+    //Соединение к соседу: очередь кадров и поток, который их пишет и переподключается при ошибке
+
+    private final class PeerLink implements Runnable {
+        private final InetSocketAddress address;
+        private final BlockingQueue<Frame> queue = new ArrayBlockingQueue<>(LINK_QUEUE_CAPACITY);
+        private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER_FRAMES];
+        private final Frame[] batch = new Frame[MAX_GATHER_FRAMES];
+        private volatile SocketChannel channel;
+        private volatile boolean connected = false;
+
+        PeerLink(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        void start() {
+            startThread(this, "Cluster-Peer-" + address.getHostString() + ":" + address.getPort());
+        }
+
+        //Пока соседа нет, кадры не копятся: после подключения он получит полный список пользователей
+
+        void send(Frame frame) {
+            if (connected && !queue.offer(frame)) {
+                droppedFrames.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void run() {
+            long reconnectDelay = 100;
+            while (isRunning) {
+                try {
+                    connect();
+                    reconnectDelay = 100;
+                    writeLoop();
+                } catch (IOException e) {
+                    if (isRunning && connected) {
+                        System.err.println("[Cluster] Link to " + address + " failed: " + e.getMessage());
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                } finally {
+                    connected = false;
+                    close();
+                }
+                if (!isRunning) {
+                    break;
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(reconnectDelay);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                reconnectDelay = Math.min(MAX_RECONNECT_DELAY_MS, reconnectDelay * 2);
+            }
+        }
+
+        private void connect() throws IOException {
+            InetSocketAddress resolved = new InetSocketAddress(address.getHostString(), address.getPort());
+            SocketChannel opened = SocketChannel.open();
+            channel = opened;
+            opened.socket().connect(resolved, (int) linkTimeoutMillis);
+            opened.socket().setTcpNoDelay(true);
+
+            // Старые кадры устарели: сосед получит список пользователей целиком
+            queue.clear();
+            connected = true;
+            Message hello = new Message(Message.MessageType.CONNECT, nodeId, secret);
+            hello.setProtocol(BinaryCodec.PROTOCOL);
+            writeFully(ByteBuffer.wrap((hello.toJson() + "\n").getBytes(StandardCharsets.UTF_8)));
+
+            String[] users = localUsers.toArray(new String[0]);
+            writeFully(Frame.of(new Message(Message.MessageType.USER_LIST, nodeId, String.join("\n", users)))
+                    .binaryBuffer());
+        }
+
+        //Кадры из очереди уходят записью со сбором; в тишине - PING, чтобы сосед не счел соединение мертвым
+
+        private void writeLoop() throws IOException, InterruptedException {
+            long pingInterval = Math.max(50, linkTimeoutMillis / 3);
+            while (isRunning) {
+                Frame first = queue.poll(pingInterval, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    writeFully(PING_FRAME.binaryBuffer());
+                    continue;
+                }
+                batch[0] = first;
+                int count = 1 + drainTo(batch, 1);
+                for (int i = 0; i < count; i++) {
+                    gather[i] = batch[i].binaryBuffer();
+                    batch[i] = null;
+                }
+                int offset = 0;
+                while (offset < count) {
+                    channel.write(gather, offset, count - offset);
+                    while (offset < count && !gather[offset].hasRemaining()) {
+                        gather[offset++] = null;
+                    }
+                }
+            }
+        }
+
+        private int drainTo(Frame[] target, int from) {
+            int count = 0;
+            Frame frame;
+            while (from + count < target.length && (frame = queue.poll()) != null) {
+                target[from + count++] = frame;
+            }
+            return count;
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        void close() {
+            SocketChannel current = channel;
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (IOException e) {
+                    // Соединение уже закрыто
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.chat.server;
+
+import com.chat.util.ConfigLoader;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+//Рассылка кадра списку получателей
+//До порога получателей - цикл в вызывающем потоке. Выше порога массив делится пополам,
+//пока куски не станут меньше CHUNK_SIZE, и куски раздаются потокам общего ForkJoinPool.
+//Вызывающий поток ждет окончания всей рассылки (invoke), поэтому следующее сообщение того же
+//отправителя начнет рассылаться только после предыдущего - порядок его сообщений у каждого
+//получателя сохраняется. Сообщения разных отправителей и раньше не упорядочивались между собой
+
+public final class FanOut {
+    public static final FanOut SERIAL = new FanOut(0, 1);
+
+    private static final int DEFAULT_THRESHOLD = 4096;
+    // Меньшие куски не окупают передачу задачи другому потоку
+    static final int CHUNK_SIZE = 1024;
+
+    private final int threshold;
+    private final ForkJoinPool pool;
+
+    //threshold == 0 или threads < 2 - рассылка всегда в вызывающем потоке
+
+    public FanOut(int threshold, int threads) {
+        this.threshold = threshold;
+        this.pool = threshold > 0 && threads > 1
+                ? new ForkJoinPool(threads, FanOut::newWorker, null, false)
+                : null;
+    }
+
+    public static FanOut create(ConfigLoader config) {
+        int threshold = config.getIntProperty("broadcast.parallel.threshold", DEFAULT_THRESHOLD);
+        int threads = config.getIntProperty("broadcast.parallel.threads",
+                Runtime.getRuntime().availableProcessors());
+        return threshold > 0 && threads > 1 ? new FanOut(threshold, threads) : SERIAL;
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("Broadcast-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    //Отправить кадр всем подключенным получателям; возвращает их число
+
+    public int send(ClientHandler[] recipients, Frame frame) {
+        // После остановки сервера рассылки, которые еще идут, заканчиваются в своем потоке
+        if (pool == null || recipients.length < threshold || pool.isShutdown()) {
+            return sendRange(recipients, 0, recipients.length, frame);
+        }
+        return pool.invoke(new Chunk(recipients, 0, recipients.length, frame));
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static int sendRange(ClientHandler[] recipients, int from, int to, Frame frame) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            ClientHandler recipient = recipients[i];
+            if (recipient.isConnected()) {
+                recipient.sendFrame(frame);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static final class Chunk extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final ClientHandler[] recipients;
+        private final int from;
+        private final int to;
+        private final Frame frame;
+
+        private Chunk(ClientHandler[] recipients, int from, int to, Frame frame) {
+            this.recipients = recipients;
+            this.from = from;
+            this.to = to;
+            this.frame = frame;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= CHUNK_SIZE) {
+                return sendRange(recipients, from, to, frame);
+            }
+            int middle = (from + to) >>> 1;
+            Chunk left = new Chunk(recipients, from, middle, frame);
+            left.fork();
+            int right = new Chunk(recipients, middle, to, frame).compute();
+            return left.join() + right;
+        }
+    }
+}
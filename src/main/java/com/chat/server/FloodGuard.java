@@ -0,0 +1,115 @@
+package com.chat.server;
+
+import com.chat.util.ConfigLoader;
+import com.chat.util.TokenBucket;
+
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Ограничение частоты сообщений: ведро токенов на пользователя и общее ведро на IP-адрес
+//Ведро пользователя живет в его обработчике, ведро адреса - пока с адреса есть подключения,
+//поэтому переподключение под новым именем не сбрасывает лимит адреса.
+//Проверка сообщения - только TokenBucket.tryAcquire()/release(); карта адресов меняется при подключении и отключении
+
+public class FloodGuard {
+    private static final int DEFAULT_USER_RATE = 10;
+    private static final int DEFAULT_USER_BURST = 20;
+    private static final int DEFAULT_IP_RATE = 50;
+    private static final int DEFAULT_IP_BURST = 100;
+    private static final int DEFAULT_DISCONNECT_AFTER = 100;
+
+    private final int userRate;
+    private final int userBurst;
+    private final int ipRate;
+    private final int ipBurst;
+    private final int disconnectAfter;
+    private final ConcurrentHashMap<InetAddress, AddressBucket> addresses = new ConcurrentHashMap<>();
+
+    //rate == 0 - ограничение выключено, disconnectAfter == 0 - не отключать
+
+    public FloodGuard(int userRate, int userBurst, int ipRate, int ipBurst, int disconnectAfter) {
+        this.userRate = Math.max(0, userRate);
+        this.userBurst = Math.max(1, userBurst);
+        this.ipRate = Math.max(0, ipRate);
+        this.ipBurst = Math.max(1, ipBurst);
+        this.disconnectAfter = Math.max(0, disconnectAfter);
+    }
+
+    public static FloodGuard create(ConfigLoader config) {
+        return new FloodGuard(
+                config.getIntProperty("rate.user.messages", DEFAULT_USER_RATE),
+                config.getIntProperty("rate.user.burst", DEFAULT_USER_BURST),
+                config.getIntProperty("rate.ip.messages", DEFAULT_IP_RATE),
+                config.getIntProperty("rate.ip.burst", DEFAULT_IP_BURST),
+                config.getIntProperty("rate.disconnect.after", DEFAULT_DISCONNECT_AFTER)
+        );
+    }
+
+    //Новое ведро пользователя или null, если лимит на пользователя выключен
+
+    public TokenBucket newUserBucket() {
+        return userRate > 0 ? new TokenBucket(userRate, userBurst) : null;
+    }
+
+    //Ведро адреса для нового подключения; каждому acquire должен соответствовать release
+    //Возвращает null, если лимит на адрес выключен или адрес неизвестен
+
+    public TokenBucket acquireAddress(InetAddress address) {
+        if (ipRate <= 0 || address == null) {
+            return null;
+        }
+        return addresses.compute(address, (key, bucket) -> {
+            if (bucket == null) {
+                bucket = new AddressBucket(ipRate, ipBurst);
+            }
+            bucket.connections++;
+            return bucket;
+        });
+    }
+
+    //Подключение с адреса закрыто: ведро последнего подключения удаляется
+
+    public void releaseAddress(InetAddress address) {
+        if (address == null) {
+            return;
+        }
+        addresses.computeIfPresent(address, (key, bucket) -> --bucket.connections > 0 ? bucket : null);
+    }
+
+    //Взять токен у ведра пользователя и ведра адреса (null - лимит выключен)
+    //Ни одно ведро не тратится впустую: если отказало ведро адреса, токен пользователя не берется,
+    //а если отказало ведро пользователя, взятый у адреса токен возвращается
+
+    static boolean tryAcquire(TokenBucket userBucket, TokenBucket addressBucket, long now) {
+        if (addressBucket != null && !addressBucket.tryAcquire(now)) {
+            return false;
+        }
+        if (userBucket != null && !userBucket.tryAcquire(now)) {
+            if (addressBucket != null) {
+                addressBucket.release();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    //Сколько сообщений можно отбросить за один всплеск до отключения (0 - не отключать)
+
+    public int getDisconnectAfter() {
+        return disconnectAfter;
+    }
+
+    int getTrackedAddresses() {
+        return addresses.size();
+    }
+
+    //Счетчик подключений меняется только внутри compute() карты
+
+    private static final class AddressBucket extends TokenBucket {
+        private int connections;
+
+        AddressBucket(double ratePerSecond, int burst) {
+            super(ratePerSecond, burst);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.chat.server;
+
+import com.chat.model.BinaryCodec;
+import com.chat.model.Message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+//Готовый к отправке кадр: сообщение, закодированное один раз для каждого протокола
+//Неизменяемый, поэтому при рассылке один и тот же кадр получают все клиенты,
+//а в смешанной комнате JSON и двоичная форма кодируются не более одного раза каждая
+
+public final class Frame {
+    private final Message message;
+    private final Frame[] parts;
+    private final boolean control;
+    private volatile ByteBuffer json;
+    private volatile ByteBuffer binary;
+
+    private Frame(Message message, ByteBuffer json) {
+        this.message = message;
+        this.parts = null;
+        this.json = json;
+        this.control = message != null && isControl(message.getType());
+    }
+
+    private Frame(Frame[] parts) {
+        this.message = null;
+        this.parts = parts;
+        this.control = false;
+    }
+
+    public static Frame of(Message message) {
+        return new Frame(message, null);
+    }
+
+    public static Frame ofJson(String json) {
+        return new Frame(null, wrap((json + "\n").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    //Несколько кадров подряд одним буфером: уходит в очередь клиента одним элементом
+    //и записывается в сокет одной операцией
+
+    public static Frame batch(Frame[] frames) {
+        return new Frame(frames.clone());
+    }
+
+    //Представление для записи: общие байты, но своя позиция у каждого получателя
+
+    public ByteBuffer buffer(boolean binaryProtocol) {
+        return binaryProtocol ? binaryBuffer() : jsonBuffer();
+    }
+
+    public ByteBuffer jsonBuffer() {
+        ByteBuffer bytes = json;
+        if (bytes == null) {
+            // Гонка безопасна: в худшем случае два потока закодируют одно и то же
+            bytes = parts != null
+                    ? join(false)
+                    : wrap((message.toJson() + "\n").getBytes(StandardCharsets.UTF_8));
+            json = bytes;
+        }
+        return bytes.duplicate();
+    }
+
+    public ByteBuffer binaryBuffer() {
+        ByteBuffer bytes = binary;
+        if (bytes == null) {
+            bytes = parts != null ? join(true) : wrap(BinaryCodec.encode(getMessage()));
+            binary = bytes;
+        }
+        return bytes.duplicate();
+    }
+
+    private ByteBuffer join(boolean binaryProtocol) {
+        int total = 0;
+        for (Frame part : parts) {
+            total += part.buffer(binaryProtocol).remaining();
+        }
+        ByteBuffer joined = ByteBuffer.allocate(total);
+        for (Frame part : parts) {
+            joined.put(part.buffer(binaryProtocol));
+        }
+        joined.flip();
+        return joined.asReadOnlyBuffer();
+    }
+
+    //Служебный кадр уходит клиенту раньше кадров чата (см. OutboundQueue)
+
+    public boolean isControl() {
+        return control;
+    }
+
+    //Служебные типы: проверка соединения, уведомления сервера и список пользователей.
+    //MESSAGE, JOIN, LEAVE и подгрузка истории - чат
+
+    static boolean isControl(Message.MessageType type) {
+        switch (type) {
+            case PING:
+            case SYSTEM:
+            case USER_LIST:
+            case PRESENCE:
+            case DISCONNECT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    //Сообщение кадра (у пакета кадров единого сообщения нет)
+
+    public Message getMessage() {
+        if (message != null) {
+            return message;
+        }
+        if (parts != null) {
+            throw new IllegalStateException("Batch frame has no single message");
+        }
+        ByteBuffer bytes = json.duplicate();
+        byte[] line = new byte[bytes.remaining()];
+        bytes.get(line);
+        return Message.fromJson(new String(line, StandardCharsets.UTF_8).trim());
+    }
+
+    private static ByteBuffer wrap(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+}
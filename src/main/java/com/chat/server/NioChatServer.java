@@ -0,0 +1,227 @@
+package com.chat.server;
+
+import com.chat.server.history.MessageStore;
+import com.chat.util.ChatLogger;
+import com.chat.util.ConfigLoader;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+// Неблокирующий движок сервера чата (server.mode=nio)
+// Небольшое число циклов событий на Selector обслуживает тысячи соединений,
+// пул клиентов и протокол сообщений общие с ChatServer
+// Подключения принимают сами циклы: у каждого свой серверный канал на общем порту (SO_REUSEPORT),
+// ядро раскладывает подключения по каналам, и accept масштабируется с числом ядер.
+// Без SO_REUSEPORT один поток принимает подключения и отдает их наименее загруженному циклу
+
+public class NioChatServer {
+    private ServerSocketChannel serverChannel;
+    // Каналы циклов при приеме через SO_REUSEPORT (null - принимает один поток)
+    private ServerSocketChannel[] shardChannels;
+    private ChatLogger logger;
+    private ConfigLoader config;
+    private ClientPool clientPool;
+    private MessageStore history;
+    private ServerContext context;
+    private NioEventLoop[] loops;
+    private int nextLoop = 0;
+    private volatile boolean isRunning = false;
+    // shutdown() вызывают и finally в start(), и shutdown hook - выполняется один раз
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    public NioChatServer() {
+        this(new ConfigLoader());
+    }
+
+    public NioChatServer(ConfigLoader config) {
+        this.config = config;
+        this.logger = ChatLogger.create(config);
+        this.clientPool = new ClientPool();
+        // Исходящие очереди опустошают сами циклы событий
+        this.history = MessageStore.create(config);
+        this.context = new ServerContext(config, logger, clientPool, null, history);
+    }
+
+    //запуск сервера
+
+    public void start() {
+        try {
+            int port = config.getServerPort();
+            String host = config.getServerHost();
+            int threads = Math.max(1, config.getNioThreads());
+
+            loops = new NioEventLoop[threads];
+            for (int i = 0; i < threads; i++) {
+                loops[i] = new NioEventLoop("NioEventLoop-" + i);
+                loops[i].start();
+            }
+
+            // Очередь принятых ядром подключений: при массовом переподключении 50 по умолчанию мало
+            int backlog = config.getIntProperty("server.accept.backlog", ChatServer.DEFAULT_ACCEPT_BACKLOG);
+            // auto - отдельные каналы, только если циклов больше одного: одному циклу
+            // выделенный поток приема не мешает обрабатывать соединения
+            String acceptMode = config.getProperty("server.nio.accept", "auto");
+            boolean sharded = ("reuseport".equals(acceptMode) || ("auto".equals(acceptMode) && threads > 1))
+                    && supportsReusePort();
+            if (sharded) {
+                shardChannels = new ServerSocketChannel[threads];
+                for (int i = 0; i < threads; i++) {
+                    shardChannels[i] = ServerSocketChannel.open();
+                    shardChannels[i].setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                    shardChannels[i].bind(new InetSocketAddress(port), backlog);
+                }
+            } else {
+                serverChannel = ServerSocketChannel.open();
+                serverChannel.bind(new InetSocketAddress(port), backlog);
+            }
+            isRunning = true;
+            context.getMetrics().register();
+            if (context.getCluster() != null) {
+                context.getCluster().start();
+            }
+
+            logger.logSystem("Server started on " + host + ":" + port + " (nio, " + threads + " event loops)");
+            System.out.println("---------------------------------------");
+            System.out.println("   NETWORK CHAT SERVER (NIO)");
+            System.out.println("---------------------------------------");
+            System.out.println("Server started on: " + host + ":" + port);
+            System.out.println("Event loops: " + threads + (sharded ? " (accepting via SO_REUSEPORT)" : ""));
+            System.out.println("Log file: " + config.getFullLogPath());
+            System.out.println("Waiting for connections...");
+            System.out.println("_______________________________________");
+
+            if (sharded) {
+                for (int i = 0; i < threads; i++) {
+                    loops[i].listen(shardChannels[i], this::newHandler);
+                }
+                // Основной поток только ждет остановки циклов
+                for (NioEventLoop loop : loops) {
+                    loop.awaitTermination(0);
+                }
+            } else {
+                acceptConnections();
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.logSystem("Failed to start server: " + e.getMessage());
+            System.err.println("Failed to start server: " + e.getMessage());
+            isRunning = false;
+        } finally {
+            shutdown();
+        }
+    }
+
+    private static boolean supportsReusePort() {
+        try (ServerSocketChannel probe = ServerSocketChannel.open()) {
+            return probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private NioClientHandler newHandler(SocketChannel channel, NioEventLoop loop) {
+        return new NioClientHandler(channel, loop, context);
+    }
+
+    //Цикл принятия подключений в одном потоке: соединение закрепляется за наименее загруженным циклом
+
+    private void acceptConnections() {
+        while (isRunning) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+
+                NioEventLoop loop = leastLoadedLoop();
+                loop.register(channel, newHandler(channel, loop));
+
+            } catch (AsynchronousCloseException e) {
+                // Нормальное завершение при shutdown
+                break;
+            } catch (IOException e) {
+                if (isRunning) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    //При равной нагрузке циклы выбираются по кругу
+
+    private NioEventLoop leastLoadedLoop() {
+        NioEventLoop best = loops[nextLoop];
+        for (int i = 1; i < loops.length; i++) {
+            NioEventLoop loop = loops[(nextLoop + i) % loops.length];
+            if (loop.getConnectionCount() < best.getConnectionCount()) {
+                best = loop;
+            }
+        }
+        nextLoop = (nextLoop + 1) % loops.length;
+        return best;
+    }
+
+    //Корректно завершить работу сервера
+
+    public void shutdown() {
+        if (!stopped.compareAndSet(false, true)) {
+            return;
+        }
+        System.out.println("\n[Server] Shutting down...");
+        logger.logSystem("Server shutting down");
+
+        isRunning = false;
+
+        try {
+            if (serverChannel != null && serverChannel.isOpen()) {
+                serverChannel.close();
+            }
+            if (shardChannels != null) {
+                for (ServerSocketChannel channel : shardChannels) {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                }
+            }
+
+            if (loops != null) {
+                for (NioEventLoop loop : loops) {
+                    loop.shutdown();
+                }
+                for (NioEventLoop loop : loops) {
+                    loop.awaitTermination(5000);
+                }
+            }
+
+            clientPool.clear();
+            context.shutdown();
+            if (history != null) {
+                history.close();
+            }
+
+            context.getMetrics().unregister();
+            logger.logSystem("Server stopped");
+            logger.close();
+            System.out.println("[Server] Shutdown complete");
+
+        } catch (Exception e) {
+            System.err.println("Error during shutdown: " + e.getMessage());
+        }
+    }
+
+    public String getServerInfo() {
+        return "NioChatServer{" +
+                "port=" + config.getServerPort() +
+                ", eventLoops=" + (loops != null ? loops.length : 0) +
+                ", activeClients=" + clientPool.getClientCount() +
+                ", isRunning=" + isRunning +
+                '}';
+    }
+}
@@ -0,0 +1,165 @@
+package com.chat.server;
+
+import com.chat.model.Message;
+import com.chat.util.BufferPool;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//Обработчик клиента для NIO-движка
+//Не занимает поток: чтение и запись выполняет NioEventLoop, протокол - общий с ClientHandler
+//Накопившиеся кадры уходят в сокет одной записью со сбором (GatheringByteChannel)
+
+public class NioClientHandler extends ClientHandler {
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int MAX_GATHER_FRAMES = 64;
+
+    private final SocketChannel channel;
+    private final NioEventLoop loop;
+    private SelectionKey key;
+
+    // Буфер чтения берется из пула только на время onReadable()
+    private final BufferPool readBuffers;
+
+    // Кадры текущей записи со сбором: [gatherOffset, gatherCount) еще не записаны до конца
+    // (принадлежат только потоку цикла)
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER_FRAMES];
+    private int gatherOffset = 0;
+    private int gatherCount = 0;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    public NioClientHandler(SocketChannel channel, NioEventLoop loop, ServerContext context) {
+        super(null, context);
+        this.channel = channel;
+        this.loop = loop;
+        this.readBuffers = context.getReadBuffers();
+    }
+
+    void onRegistered(SelectionKey key) {
+        this.key = key;
+        startHeartbeat();
+    }
+
+    //Канал готов к чтению (вызывается в потоке цикла)
+
+    //Недоразобранный кадр декодер копирует к себе, поэтому после разбора буфер пуст и возвращается в пул
+
+    void onReadable() throws IOException {
+        ByteBuffer readBuffer = readBuffers.acquire(READ_BUFFER_SIZE);
+        try {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                handleDisconnect();
+                return;
+            }
+
+            readBuffer.flip();
+            Message msg;
+            while ((msg = decoder.decode(readBuffer)) != null) {
+                if (!handleMessage(msg)) {
+                    handleDisconnect();
+                    return;
+                }
+            }
+        } finally {
+            readBuffers.release(readBuffer);
+        }
+    }
+
+    //Канал готов к записи (вызывается в потоке цикла)
+
+    void onWritable() throws IOException {
+        flush();
+    }
+
+    void onError(IOException e) {
+        System.err.println("Error handling client: " + e.getMessage());
+        handleDisconnect();
+    }
+
+    //Очередь опустошает поток цикла событий
+
+    @Override
+    protected void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        if (flushDelayNanos > 0) {
+            loop.schedule(this::flushSafely, flushDelayNanos);
+        } else {
+            loop.execute(this::flushSafely);
+        }
+    }
+
+    @Override
+    protected void requestDisconnect() {
+        loop.execute(this::handleDisconnect);
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    private void flush() throws IOException {
+        flushScheduled.set(false);
+        if (key == null || !key.isValid()) {
+            return;
+        }
+
+        while (gatherOffset < gatherCount || fillGather()) {
+            channel.write(gather, gatherOffset, gatherCount - gatherOffset);
+            int completed = gatherOffset;
+            while (gatherOffset < gatherCount && !gather[gatherOffset].hasRemaining()) {
+                gather[gatherOffset++] = null;
+            }
+            metrics.recordSocketWrite(gatherOffset - completed);
+            if (gatherOffset < gatherCount) {
+                // Сокет переполнен - дождемся OP_WRITE
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        if (closeWhenFlushed) {
+            handleDisconnect();
+        }
+    }
+
+    //Забрать из очереди следующую порцию кадров; false - очередь пуста
+
+    private boolean fillGather() {
+        gatherOffset = 0;
+        gatherCount = 0;
+        ByteBuffer frame;
+        while (gatherCount < gather.length && (frame = outbound.poll()) != null) {
+            gather[gatherCount++] = frame;
+        }
+        return gatherCount > 0;
+    }
+
+    @Override
+    protected InetAddress remoteAddress() {
+        return channel.socket().getInetAddress();
+    }
+
+    @Override
+    protected void closeConnection() throws IOException {
+        outbound.clear();
+        Arrays.fill(gather, null);
+        gatherOffset = 0;
+        gatherCount = 0;
+        if (channel.isOpen()) {
+            channel.close();
+            loop.connectionClosed();
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.chat.server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+//Цикл событий NIO-движка: один поток обслуживает множество соединений через Selector
+//Все операции с каналами выполняются только в потоке цикла, остальные потоки передают задачи через execute()
+//Цикл может сам принимать подключения (listen): тогда соединение от accept() до закрытия живет в одном потоке
+
+public class NioEventLoop implements Runnable {
+    // Сколько подключений принять за одно событие, чтобы accept не задерживал чтение остальных
+    private static final int MAX_ACCEPTS_PER_EVENT = 64;
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Отложенные задачи по времени запуска (только поток цикла)
+    private final PriorityQueue<ScheduledTask> scheduled = new PriorityQueue<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final String name;
+    private Thread thread;
+    private volatile boolean isRunning = true;
+
+    public NioEventLoop(String name) throws IOException {
+        this.name = name;
+        this.selector = Selector.open();
+    }
+
+    public void start() {
+        thread = new Thread(this, name);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (isRunning) {
+            try {
+                // Задачи, поставленные из самого цикла, не должны ждать следующего события
+                if (!tasks.isEmpty()) {
+                    selector.selectNow();
+                } else if (scheduled.isEmpty()) {
+                    selector.select();
+                } else {
+                    // Таймаут select() - в миллисекундах, округляем вверх
+                    long delay = scheduled.peek().deadline - System.nanoTime();
+                    if (delay > 0) {
+                        selector.select(Math.max(1, (delay + 999_999) / 1_000_000));
+                    } else {
+                        selector.selectNow();
+                    }
+                }
+                processSelectedKeys();
+                runTasks();
+                runScheduledTasks();
+            } catch (IOException e) {
+                System.err.println("[" + name + "] Selector error: " + e.getMessage());
+            }
+        }
+        closeAll();
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+
+            if (key.attachment() instanceof Acceptor) {
+                if (key.isValid() && key.isAcceptable()) {
+                    ((Acceptor) key.attachment()).accept();
+                }
+                continue;
+            }
+
+            NioClientHandler handler = (NioClientHandler) key.attachment();
+            try {
+                if (key.isValid() && key.isReadable()) {
+                    handler.onReadable();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    handler.onWritable();
+                }
+            } catch (IOException e) {
+                handler.onError(e);
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("[" + name + "] Task failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void runScheduledTasks() {
+        long now = System.nanoTime();
+        while (!scheduled.isEmpty() && scheduled.peek().deadline - now <= 0) {
+            try {
+                scheduled.poll().task.run();
+            } catch (RuntimeException e) {
+                System.err.println("[" + name + "] Task failed: " + e.getMessage());
+            }
+        }
+    }
+
+    //Выполнить задачу в потоке цикла не раньше чем через delayNanos
+
+    public void schedule(Runnable task, long delayNanos) {
+        ScheduledTask scheduledTask = new ScheduledTask(System.nanoTime() + delayNanos, task);
+        if (inEventLoop()) {
+            scheduled.add(scheduledTask);
+        } else {
+            execute(() -> scheduled.add(scheduledTask));
+        }
+    }
+
+    //Выполнить задачу в потоке цикла
+
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (Thread.currentThread() != thread) {
+            selector.wakeup();
+        }
+    }
+
+    //Зарегистрировать новое соединение в этом цикле
+
+    public void register(SocketChannel channel, NioClientHandler handler) {
+        connectionCount.incrementAndGet();
+        execute(() -> {
+            try {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ, handler);
+                handler.onRegistered(key);
+            } catch (ClosedChannelException e) {
+                // Счетчик увеличен до регистрации, а closeConnection() уменьшает его только
+                // для открытого канала - закрытый до регистрации канал вычитаем здесь
+                connectionClosed();
+                handler.onError(e);
+            }
+        });
+    }
+
+    //Принимать подключения серверного канала в самом цикле
+    //(у каждого цикла свой канал на общем порту с SO_REUSEPORT - подключения распределяет ядро)
+
+    public void listen(ServerSocketChannel serverChannel,
+                       BiFunction<SocketChannel, NioEventLoop, NioClientHandler> handlerFactory) {
+        execute(() -> {
+            try {
+                serverChannel.configureBlocking(false);
+                serverChannel.register(selector, SelectionKey.OP_ACCEPT, new Acceptor(serverChannel, handlerFactory));
+            } catch (IOException e) {
+                System.err.println("[" + name + "] Cannot listen: " + e.getMessage());
+            }
+        });
+    }
+
+    void connectionClosed() {
+        connectionCount.decrementAndGet();
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    public void shutdown() {
+        isRunning = false;
+        selector.wakeup();
+    }
+
+    public void awaitTermination(long millis) throws InterruptedException {
+        if (thread != null) {
+            thread.join(millis);
+        }
+    }
+
+    private final class Acceptor {
+        private final ServerSocketChannel serverChannel;
+        private final BiFunction<SocketChannel, NioEventLoop, NioClientHandler> handlerFactory;
+
+        private Acceptor(ServerSocketChannel serverChannel,
+                         BiFunction<SocketChannel, NioEventLoop, NioClientHandler> handlerFactory) {
+            this.serverChannel = serverChannel;
+            this.handlerFactory = handlerFactory;
+        }
+
+        //Регистрация - задача этого же цикла, она выполнится сразу после разбора событий
+
+        private void accept() {
+            for (int i = 0; i < MAX_ACCEPTS_PER_EVENT; i++) {
+                SocketChannel channel = null;
+                try {
+                    channel = serverChannel.accept();
+                    if (channel == null) {
+                        return;
+                    }
+                    channel.configureBlocking(false);
+                    channel.socket().setTcpNoDelay(true);
+                    register(channel, handlerFactory.apply(channel, NioEventLoop.this));
+                } catch (IOException e) {
+                    System.err.println("[" + name + "] Error accepting connection: " + e.getMessage());
+                    closeQuietly(channel);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Соединение уже закрыто
+        }
+    }
+
+    private static final class ScheduledTask implements Comparable<ScheduledTask> {
+        private final long deadline;
+        private final Runnable task;
+
+        private ScheduledTask(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(ScheduledTask other) {
+            return Long.compare(deadline - other.deadline, 0);
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                System.err.println("[" + name + "] Error closing channel: " + e.getMessage());
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("[" + name + "] Error closing selector: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.chat.server;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Ограниченная очередь исходящих кадров одного клиента
+//Много производителей (рассылка из разных потоков), один потребитель (писатель соединения)
+//Служебные кадры идут своей полосой, поэтому PING и уведомления сервера не ждут за
+//очередью чата медленного клиента. Порядок сохраняется внутри каждой полосы
+
+public class OutboundQueue {
+
+    //Что делать, когда очередь медленного клиента заполнена
+    public enum OverflowPolicy {
+        DROP_OLDEST,   // Выбросить самый старый кадр и поставить новый
+        DROP_NEWEST,   // Выбросить новый кадр
+        DISCONNECT;    // Отключить клиента
+
+        public static OverflowPolicy parse(String value, OverflowPolicy defaultValue) {
+            if (value == null) {
+                return defaultValue;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                return defaultValue;
+            }
+        }
+    }
+
+    // Две полосы: служебные кадры (PING, SYSTEM, USER_LIST...) уходят раньше чата
+    private final Queue<ByteBuffer> control = new ConcurrentLinkedQueue<>();
+    private final Queue<ByteBuffer> chat = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final int capacity;
+    private final OverflowPolicy policy;
+
+    public OutboundQueue(int capacity, OverflowPolicy policy) {
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+    }
+
+    //Поставить кадр чата в очередь
+    //Возвращает false, если по политике DISCONNECT клиента нужно отключить
+
+    public boolean offer(ByteBuffer frame) {
+        return offer(frame, false);
+    }
+
+    //Поставить кадр в свою полосу. Емкость у полос общая; при переполнении
+    //первым выбрасывается чат: служебный кадр вытесняет самый старый кадр чата,
+    //и только если чата в очереди нет, к служебной полосе применяется политика
+
+    public boolean offer(ByteBuffer frame, boolean isControl) {
+        Queue<ByteBuffer> lane = isControl ? control : chat;
+        if (size.incrementAndGet() > capacity) {
+            if (isControl && dropOldest(chat)) {
+                control.add(frame);
+                return true;
+            }
+            switch (policy) {
+                case DROP_NEWEST:
+                    size.decrementAndGet();
+                    dropped.incrementAndGet();
+                    return true;
+
+                case DROP_OLDEST:
+                    // Потребитель забирает кадр через poll() до записи,
+                    // поэтому голова очереди никогда не бывает записана частично.
+                    // Своя полоса пуста (чат при очереди из служебных кадров) - выбрасываем новый:
+                    // служебные кадры ради чата не вытесняются
+                    if (!dropOldest(lane)) {
+                        size.decrementAndGet();
+                        dropped.incrementAndGet();
+                        return true;
+                    }
+                    break;
+
+                default:
+                    size.decrementAndGet();
+                    dropped.incrementAndGet();
+                    return false;
+            }
+        }
+        lane.add(frame);
+        return true;
+    }
+
+    private boolean dropOldest(Queue<ByteBuffer> lane) {
+        if (lane.poll() == null) {
+            return false;
+        }
+        size.decrementAndGet();
+        dropped.incrementAndGet();
+        return true;
+    }
+
+    //Следующий кадр: сначала служебные, потом чат
+
+    public ByteBuffer poll() {
+        ByteBuffer frame = control.poll();
+        if (frame == null) {
+            frame = chat.poll();
+        }
+        if (frame != null) {
+            size.decrementAndGet();
+        }
+        return frame;
+    }
+
+    public boolean isEmpty() {
+        return control.isEmpty() && chat.isEmpty();
+    }
+
+    public int size() {
+        return Math.max(0, size.get());
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public void clear() {
+        while (poll() != null) {
+            // выбрасываем все кадры
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.chat.server;
+
+//Последние сообщения комнаты в памяти для мгновенной подгрузки при входе
+//Кольцо заранее выделенного размера хранит уже закодированные кадры рассылки;
+//старые кадры вытесняются по количеству, суммарному размеру и возрасту.
+//Подгрузка собирается в один пакетный кадр и переиспользуется всеми входящими,
+//пока в кольце ничего не изменилось, поэтому вход тысяч пользователей не трогает диск
+
+public class RecentHistory {
+    static final int DEFAULT_COUNT = 100;
+    static final long DEFAULT_BYTES = 256 * 1024;
+    static final long DEFAULT_AGE_MS = 60 * 60 * 1000L;
+
+    private final Frame[] frames;
+    private final long[] times;
+    private final int[] sizes;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+
+    // Под монитором кольца
+    private int head = 0;   // Индекс самого старого кадра
+    private int count = 0;
+    private long totalBytes = 0;
+    private Frame backlog;
+
+    //maxBytes == 0, maxAgeMillis == 0 - ограничение отключено
+
+    public RecentHistory(int maxCount, long maxBytes, long maxAgeMillis) {
+        int capacity = Math.max(1, maxCount);
+        this.frames = new Frame[capacity];
+        this.times = new long[capacity];
+        this.sizes = new int[capacity];
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public void add(Frame frame) {
+        add(frame, System.currentTimeMillis());
+    }
+
+    synchronized void add(Frame frame, long now) {
+        // Размер считаем по JSON-форме: рассылка все равно ее закодирует
+        int size = frame.jsonBuffer().remaining();
+        if (count == frames.length) {
+            evictOldest();
+        }
+        int tail = (head + count) % frames.length;
+        frames[tail] = frame;
+        times[tail] = now;
+        sizes[tail] = size;
+        count++;
+        totalBytes += size;
+
+        while (maxBytes > 0 && totalBytes > maxBytes && count > 1) {
+            evictOldest();
+        }
+        backlog = null;
+    }
+
+    //Все сохраненные кадры одним пакетом (от старых к новым) или null, если кольцо пусто
+
+    public Frame backlog() {
+        return backlog(System.currentTimeMillis());
+    }
+
+    synchronized Frame backlog(long now) {
+        if (maxAgeMillis > 0) {
+            while (count > 0 && now - times[head] > maxAgeMillis) {
+                evictOldest();
+                backlog = null;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        if (backlog == null) {
+            Frame[] snapshot = new Frame[count];
+            for (int i = 0; i < count; i++) {
+                snapshot[i] = frames[(head + i) % frames.length];
+            }
+            backlog = Frame.batch(snapshot);
+        }
+        return backlog;
+    }
+
+    private void evictOldest() {
+        totalBytes -= sizes[head];
+        frames[head] = null;
+        head = (head + 1) % frames.length;
+        count--;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+}
@@ -0,0 +1,116 @@
+package com.chat.server;
+
+import java.util.Arrays;
+
+//Комната чата: участники и последние сообщения
+//Список участников - неизменяемый массив, заменяемый при входе и выходе (copy-on-write),
+//поэтому рассылка идет по массиву без блокировок и стоит ровно столько, сколько участников
+
+public final class Room {
+    private static final ClientHandler[] NO_MEMBERS = new ClientHandler[0];
+
+    private final String name;
+    private final int maxMembers;
+    private final RecentHistory recentHistory;
+    private final FanOut fanOut;
+    private volatile ClientHandler[] members = NO_MEMBERS;
+    // Пустая комната удалена из реестра; вход в нее нужно повторить с новой комнатой
+    private boolean closed = false;
+
+    Room(String name, int maxMembers, RecentHistory recentHistory, FanOut fanOut) {
+        this.name = name;
+        this.maxMembers = maxMembers;
+        this.recentHistory = recentHistory;
+        this.fanOut = fanOut;
+    }
+
+    enum AddResult {
+        ADDED, ALREADY_MEMBER, FULL, CLOSED
+    }
+
+    synchronized AddResult add(ClientHandler client) {
+        if (closed) {
+            return AddResult.CLOSED;
+        }
+        ClientHandler[] current = members;
+        for (ClientHandler member : current) {
+            if (member == client) {
+                return AddResult.ALREADY_MEMBER;
+            }
+        }
+        if (maxMembers > 0 && current.length >= maxMembers) {
+            return AddResult.FULL;
+        }
+        ClientHandler[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = client;
+        // Последние сообщения ставятся в очередь под тем же монитором, что и publish():
+        // каждое сообщение вошедший получит ровно один раз - либо в подгрузке, либо вживую, и
+        // подгрузка окажется в очереди раньше любого более нового кадра
+        if (recentHistory != null) {
+            Frame backlog = recentHistory.backlog();
+            if (backlog != null) {
+                client.sendFrame(backlog);
+            }
+        }
+        members = updated;
+        return AddResult.ADDED;
+    }
+
+    synchronized boolean remove(ClientHandler client) {
+        ClientHandler[] current = members;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == client) {
+                ClientHandler[] updated = new ClientHandler[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                members = updated;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Закрыть комнату, если в ней никого не осталось
+
+    synchronized boolean closeIfEmpty() {
+        if (members.length == 0) {
+            closed = true;
+        }
+        return closed;
+    }
+
+    //Сообщение чата: запомнить в последних сообщениях и разослать участникам
+    //Кольцо и список получателей меняются атомарно относительно входа в комнату (add)
+
+    public int publish(Frame frame) {
+        ClientHandler[] recipients;
+        synchronized (this) {
+            if (recentHistory != null) {
+                recentHistory.add(frame);
+            }
+            recipients = members;
+        }
+        return fanOut.send(recipients, frame);
+    }
+
+    //Рассылка участникам комнаты; возвращает число получателей
+    //Большие комнаты рассылаются параллельно (см. FanOut)
+
+    public int broadcastFrame(Frame frame) {
+        return fanOut.send(members, frame);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMemberCount() {
+        return members.length;
+    }
+
+    //null - последние сообщения не хранятся
+
+    public RecentHistory getRecentHistory() {
+        return recentHistory;
+    }
+}
@@ -0,0 +1,138 @@
+package com.chat.server;
+
+import com.chat.util.ConfigLoader;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+//Реестр комнат: индекс комната -> участники
+//Каждый пользователь после CONNECT входит в общую комнату, остальные - по JOIN.
+//Пустые комнаты (кроме общей) удаляются. Ограничения: комнат на пользователя
+//(room.max.per.user) и участников в комнате (room.max.members)
+
+public class RoomRegistry {
+    public static final String DEFAULT_ROOM = "general";
+
+    private static final int DEFAULT_MAX_PER_USER = 10;
+    private static final int DEFAULT_MAX_MEMBERS = 10000;
+    private static final Pattern ROOM_NAME = Pattern.compile("[\\p{L}\\p{N}_#.-]{1,64}");
+
+    //Результат входа в комнату
+    public enum JoinResult {
+        JOINED,
+        ALREADY_MEMBER,
+        ROOM_FULL,
+        TOO_MANY_ROOMS,
+        INVALID_NAME
+    }
+
+    private final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
+    private final int maxRoomsPerUser;
+    private final int maxMembersPerRoom;
+    private final int recentCount;
+    private final long recentBytes;
+    private final long recentAgeMillis;
+    private final FanOut fanOut;
+
+    //0 в ограничениях - без ограничения; recentCount == 0 - комнаты не хранят последние сообщения
+
+    public RoomRegistry(int maxRoomsPerUser, int maxMembersPerRoom,
+                        int recentCount, long recentBytes, long recentAgeMillis) {
+        this(maxRoomsPerUser, maxMembersPerRoom, recentCount, recentBytes, recentAgeMillis, FanOut.SERIAL);
+    }
+
+    public RoomRegistry(int maxRoomsPerUser, int maxMembersPerRoom,
+                        int recentCount, long recentBytes, long recentAgeMillis, FanOut fanOut) {
+        this.fanOut = fanOut;
+        this.maxRoomsPerUser = maxRoomsPerUser;
+        this.maxMembersPerRoom = maxMembersPerRoom;
+        this.recentCount = recentCount;
+        this.recentBytes = recentBytes;
+        this.recentAgeMillis = recentAgeMillis;
+        rooms.put(DEFAULT_ROOM, newRoom(DEFAULT_ROOM));
+    }
+
+    public static RoomRegistry create(ConfigLoader config, FanOut fanOut) {
+        return new RoomRegistry(
+                config.getIntProperty("room.max.per.user", DEFAULT_MAX_PER_USER),
+                config.getIntProperty("room.max.members", DEFAULT_MAX_MEMBERS),
+                config.getIntProperty("history.recent.count", RecentHistory.DEFAULT_COUNT),
+                config.getSizeProperty("history.recent.bytes", RecentHistory.DEFAULT_BYTES),
+                config.getDurationProperty("history.recent.age", RecentHistory.DEFAULT_AGE_MS),
+                fanOut
+        );
+    }
+
+    private Room newRoom(String name) {
+        RecentHistory recent = recentCount > 0
+                ? new RecentHistory(recentCount, recentBytes, recentAgeMillis)
+                : null;
+        return new Room(name, maxMembersPerRoom, recent, fanOut);
+    }
+
+    //Имя комнаты сообщения: null - общая комната
+
+    public static String roomName(String room) {
+        return room == null ? DEFAULT_ROOM : room;
+    }
+
+    public Room getRoom(String name) {
+        return rooms.get(roomName(name));
+    }
+
+    public JoinResult join(String name, ClientHandler client) {
+        name = roomName(name);
+        if (!ROOM_NAME.matcher(name).matches()) {
+            return JoinResult.INVALID_NAME;
+        }
+        Set<String> joined = client.getRooms();
+        if (joined.contains(name)) {
+            return JoinResult.ALREADY_MEMBER;
+        }
+        if (maxRoomsPerUser > 0 && joined.size() >= maxRoomsPerUser) {
+            return JoinResult.TOO_MANY_ROOMS;
+        }
+
+        while (true) {
+            Room room = rooms.computeIfAbsent(name, this::newRoom);
+            switch (room.add(client)) {
+                case ADDED:
+                    joined.add(name);
+                    return JoinResult.JOINED;
+                case ALREADY_MEMBER:
+                    return JoinResult.ALREADY_MEMBER;
+                case FULL:
+                    return JoinResult.ROOM_FULL;
+                default:
+                    // Комнату только что удалили как пустую - берем новую
+                    rooms.remove(name, room);
+            }
+        }
+    }
+
+    public boolean leave(String name, ClientHandler client) {
+        name = roomName(name);
+        Room room = rooms.get(name);
+        if (room == null || !room.remove(client)) {
+            return false;
+        }
+        client.getRooms().remove(name);
+        if (!DEFAULT_ROOM.equals(name) && room.closeIfEmpty()) {
+            rooms.remove(name, room);
+        }
+        return true;
+    }
+
+    //Выход из всех комнат при отключении
+
+    public void leaveAll(ClientHandler client) {
+        for (String name : client.getRooms().toArray(new String[0])) {
+            leave(name, client);
+        }
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+}
@@ -0,0 +1,237 @@
+package com.chat.server;
+
+import com.chat.model.Message;
+import com.chat.util.ConfigLoader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//Список пользователей чата: версионированные неизменяемые снимки и рассылка изменений
+//
+//Вход и выход пользователя не рассылаются сразу: изменения копятся presence.debounce мс,
+//взаимно гасятся (вышел и снова вошел - изменений нет) и уходят всем одним сообщением
+//PRESENCE с новой версией. Поэтому массовое переподключение после перезапуска - это
+//несколько рассылок, а не по рассылке на каждого пользователя.
+//Новый снимок строится один раз на рассылку; его страницы USER_LIST кодируются
+//при первом запросе и дальше отдаются всем как готовые кадры
+
+public class Roster {
+    private static final long DEFAULT_DEBOUNCE_MS = 100;
+    private static final int DEFAULT_PAGE_SIZE = 500;
+
+    private final ClientPool clientPool;
+    private final FanOut fanOut;
+    private final long debounceMillis;
+    private final int pageSize;
+    private final ScheduledExecutorService scheduler;
+
+    // Под монитором списка
+    private Snapshot snapshot;
+    private final Map<String, Boolean> pending = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+
+    //debounceMillis == 0 - изменения рассылаются сразу
+
+    public Roster(ClientPool clientPool, long debounceMillis, int pageSize) {
+        this(clientPool, FanOut.SERIAL, debounceMillis, pageSize);
+    }
+
+    public Roster(ClientPool clientPool, FanOut fanOut, long debounceMillis, int pageSize) {
+        this.clientPool = clientPool;
+        this.fanOut = fanOut;
+        this.debounceMillis = Math.max(0, debounceMillis);
+        this.pageSize = Math.max(1, pageSize);
+        this.snapshot = new Snapshot(0, new String[0], this.pageSize);
+        this.scheduler = this.debounceMillis > 0
+                ? Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "Roster-Presence");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+
+    public static Roster create(ConfigLoader config, ClientPool clientPool, FanOut fanOut) {
+        return new Roster(
+                clientPool,
+                fanOut,
+                config.getDurationProperty("presence.debounce", DEFAULT_DEBOUNCE_MS),
+                config.getIntProperty("roster.page.size", DEFAULT_PAGE_SIZE)
+        );
+    }
+
+    public void userJoined(String username) {
+        changed(username, Boolean.TRUE);
+    }
+
+    public void userLeft(String username) {
+        changed(username, Boolean.FALSE);
+    }
+
+    private synchronized void changed(String username, Boolean online) {
+        pending.remove(username);
+        pending.put(username, online);
+        if (scheduler == null) {
+            flush();
+            return;
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            try {
+                scheduler.schedule(this::flush, debounceMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Сервер останавливается
+                flushScheduled = false;
+            }
+        }
+    }
+
+    //Применить накопленные изменения: новый снимок и рассылка PRESENCE
+    //Под монитором, чтобы страница USER_LIST и следующие PRESENCE приходили клиенту по порядку версий
+    //Возвращает разосланное сообщение или null, если изменений нет
+
+    synchronized Message flush() {
+        flushScheduled = false;
+        if (pending.isEmpty()) {
+            return null;
+        }
+
+        List<String> added = new ArrayList<>();
+        Set<String> removed = new HashSet<>();
+        StringBuilder diff = new StringBuilder();
+        for (Map.Entry<String, Boolean> change : pending.entrySet()) {
+            String username = change.getKey();
+            boolean present = snapshot.contains(username);
+            if (change.getValue() && !present) {
+                added.add(username);
+                appendChange(diff, '+', username);
+            } else if (!change.getValue() && present) {
+                removed.add(username);
+                appendChange(diff, '-', username);
+            }
+        }
+        pending.clear();
+        if (added.isEmpty() && removed.isEmpty()) {
+            return null;
+        }
+
+        snapshot = new Snapshot(snapshot.version + 1, merge(snapshot.users, added, removed), pageSize);
+
+        Message presence = new Message(Message.MessageType.PRESENCE, "SERVER", diff.toString());
+        presence.setVersion(snapshot.version);
+        fanOut.send(clientPool.snapshot(), Frame.of(presence));
+        return presence;
+    }
+
+    private static void appendChange(StringBuilder diff, char sign, String username) {
+        if (diff.length() > 0) {
+            diff.append('\n');
+        }
+        diff.append(sign).append(username);
+    }
+
+    //Отсортированный список без removed и с added за O(n + k log k)
+
+    private static String[] merge(String[] users, List<String> added, Set<String> removed) {
+        String[] additions = added.toArray(new String[0]);
+        Arrays.sort(additions);
+        String[] result = new String[users.length - removed.size() + additions.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < users.length || j < additions.length) {
+            if (i < users.length && removed.contains(users[i])) {
+                i++;
+            } else if (j == additions.length || (i < users.length && users[i].compareTo(additions[j]) < 0)) {
+                result[k++] = users[i++];
+            } else {
+                result[k++] = additions[j++];
+            }
+        }
+        return result;
+    }
+
+    //Отправить клиенту страницу списка пользователей, начиная с offset
+
+    public synchronized void sendPage(ClientHandler client, int offset) {
+        client.sendFrame(snapshot.page(offset));
+    }
+
+    public synchronized Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    //Неизменяемый снимок списка пользователей
+
+    public static final class Snapshot {
+        private final long version;
+        private final String[] users;
+        private final int pageSize;
+        // Закодированные страницы USER_LIST (строятся при первом запросе)
+        private final Frame[] pages;
+
+        private Snapshot(long version, String[] users, int pageSize) {
+            this.version = version;
+            this.users = users;
+            this.pageSize = pageSize;
+            this.pages = new Frame[Math.max(1, (users.length + pageSize - 1) / pageSize)];
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public int size() {
+            return users.length;
+        }
+
+        public boolean contains(String username) {
+            return Arrays.binarySearch(users, username) >= 0;
+        }
+
+        //Страница, в которую попадает offset (за пределами списка - последняя)
+
+        synchronized Frame page(int offset) {
+            int index = Math.min(Math.max(0, offset) / pageSize, pages.length - 1);
+            if (pages[index] == null) {
+                pages[index] = Frame.of(pageMessage(index));
+            }
+            return pages[index];
+        }
+
+        private Message pageMessage(int index) {
+            int from = index * pageSize;
+            int to = Math.min(users.length, from + pageSize);
+            StringBuilder content = new StringBuilder("Active users");
+            if (pages.length > 1) {
+                content.append(" (").append(from + 1).append('-').append(to)
+                        .append(" of ").append(users.length).append(')');
+            }
+            content.append(": ");
+            for (int i = from; i < to; i++) {
+                if (i > from) {
+                    content.append(", ");
+                }
+                content.append(users[i]);
+            }
+            Message message = new Message(Message.MessageType.USER_LIST, "SERVER", content.toString());
+            message.setVersion(version);
+            return message;
+        }
+    }
+}
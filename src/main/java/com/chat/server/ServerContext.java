@@ -0,0 +1,235 @@
+package com.chat.server;
+
+import com.chat.server.history.MessageStore;
+import com.chat.util.BufferPool;
+import com.chat.util.ChatLogger;
+import com.chat.util.ConfigLoader;
+import com.chat.util.HashedWheelTimer;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+//Общие компоненты сервера, которые получает каждый обработчик клиента
+
+public class ServerContext {
+    private static final int DEFAULT_OUTBOUND_CAPACITY = 1024;
+    private static final long DEFAULT_HEARTBEAT_INTERVAL_MS = 30_000;
+    private static final long DEFAULT_HEARTBEAT_TIMEOUT_MS = 10_000;
+    // Колесо проверок простоя: тик 100 мс, 512 корзин - один оборот ~51 с
+    private static final long HEARTBEAT_TICK_MS = 100;
+    private static final int HEARTBEAT_WHEEL_SIZE = 512;
+    private static final long DEFAULT_MAX_FRAME_BYTES = 64 * 1024;
+    private static final int DEFAULT_BUFFER_POOL_MAX = 1024;
+
+    private final ConfigLoader config;
+    private final ChatLogger logger;
+    private final ClientPool clientPool;
+    private final Executor writerPool;
+    private final MessageStore history;
+    private final FanOut fanOut;
+    private final RoomRegistry rooms;
+    private final Roster roster;
+    private final ServerMetrics metrics;
+    private final FloodGuard floodGuard;
+    private final ClusterNode cluster;
+    private final Set<String> admins;
+    private final int outboundCapacity;
+    private final OutboundQueue.OverflowPolicy overflowPolicy;
+    private final long flushDelayNanos;
+    private final long heartbeatIntervalMillis;
+    private final long heartbeatTimeoutMillis;
+    private final HashedWheelTimer heartbeatTimer;
+    private final int maxFrameBytes;
+    private final BufferPool readBuffers;
+    private final ExecutorService historyWriter;
+    private final BufferPool writeBuffers;
+
+    //writerPool == null - очередь опустошается в вызывающем потоке
+
+    public ServerContext(ConfigLoader config, ChatLogger logger, ClientPool clientPool, Executor writerPool) {
+        this(config, logger, clientPool, writerPool, null);
+    }
+
+    //history == null - история сообщений не сохраняется
+
+    public ServerContext(ConfigLoader config, ChatLogger logger, ClientPool clientPool, Executor writerPool,
+                         MessageStore history) {
+        this.config = config;
+        this.logger = logger;
+        this.clientPool = clientPool;
+        this.writerPool = writerPool;
+        this.history = history;
+        this.fanOut = FanOut.create(config);
+        this.rooms = RoomRegistry.create(config, fanOut);
+        this.roster = Roster.create(config, clientPool, fanOut);
+        this.metrics = new ServerMetrics(clientPool);
+        this.floodGuard = FloodGuard.create(config);
+        this.cluster = ClusterNode.create(config, rooms, roster, history);
+        this.admins = parseAdmins(config.getProperty("server.admins", ""));
+        this.outboundCapacity = config.getIntProperty("outbound.queue.capacity", DEFAULT_OUTBOUND_CAPACITY);
+        this.overflowPolicy = OutboundQueue.OverflowPolicy.parse(
+                config.getProperty("outbound.queue.overflow"),
+                OutboundQueue.OverflowPolicy.DROP_OLDEST
+        );
+        this.flushDelayNanos = Math.max(0, config.getIntProperty("outbound.flush.delay.us", 0)) * 1000L;
+        this.heartbeatIntervalMillis = config.getDurationProperty("heartbeat.interval", DEFAULT_HEARTBEAT_INTERVAL_MS);
+        this.heartbeatTimeoutMillis = Math.max(HEARTBEAT_TICK_MS,
+                config.getDurationProperty("heartbeat.timeout", DEFAULT_HEARTBEAT_TIMEOUT_MS));
+        this.heartbeatTimer = heartbeatIntervalMillis > 0
+                ? new HashedWheelTimer("Heartbeat", HEARTBEAT_TICK_MS, HEARTBEAT_WHEEL_SIZE)
+                : null;
+        this.maxFrameBytes = (int) Math.min(Integer.MAX_VALUE,
+                Math.max(1, config.getSizeProperty("max.frame.bytes", DEFAULT_MAX_FRAME_BYTES)));
+        int pooledBuffers = config.getIntProperty("buffer.pool.max", DEFAULT_BUFFER_POOL_MAX);
+        this.readBuffers = new BufferPool(true, BufferPool.DEFAULT_SIZE_CLASSES, pooledBuffers);
+        this.writeBuffers = new BufferPool(false, BufferPool.DEFAULT_SIZE_CLASSES, pooledBuffers);
+        // В NIO запись истории на диск уходит из цикла событий в свой поток (один - порядок сохраняется)
+        this.historyWriter = history != null && "nio".equals(config.getServerMode())
+                ? Executors.newSingleThreadExecutor(task -> {
+                    Thread thread = new Thread(task, "History-Writer");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+
+    private static Set<String> parseAdmins(String value) {
+        Set<String> names = new HashSet<>();
+        for (String name : value.split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    public OutboundQueue newOutboundQueue() {
+        return new OutboundQueue(outboundCapacity, overflowPolicy);
+    }
+
+    //Задержка перед записью в сокет, чтобы накопить больше кадров (0 - писать сразу)
+
+    public long getFlushDelayNanos() {
+        return flushDelayNanos;
+    }
+
+    //Один таймер проверок простоя на все соединения; null - heartbeat выключен
+
+    public HashedWheelTimer getHeartbeatTimer() {
+        return heartbeatTimer;
+    }
+
+    //Сколько клиент может молчать до PING
+
+    public long getHeartbeatIntervalMillis() {
+        return heartbeatIntervalMillis;
+    }
+
+    //Сколько ждать ответа на PING до отключения
+
+    public long getHeartbeatTimeoutMillis() {
+        return heartbeatTimeoutMillis;
+    }
+
+    //Наибольший размер входящего сообщения в байтах; более длинные пропускаются
+
+    public int getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+
+    //Поток записи истории; null - писать в вызывающем потоке
+
+    public Executor getHistoryWriter() {
+        return historyWriter;
+    }
+
+    //Прямые буферы чтения NIO-движка: берутся на время одного чтения из канала
+
+    public BufferPool getReadBuffers() {
+        return readBuffers;
+    }
+
+    //Буферы писателя блокирующего движка: берутся на время опустошения очереди
+
+    public BufferPool getWriteBuffers() {
+        return writeBuffers;
+    }
+
+    //Остановить фоновые потоки общих компонентов
+
+    public void shutdown() {
+        if (cluster != null) {
+            cluster.shutdown();
+        }
+        roster.shutdown();
+        fanOut.shutdown();
+        if (heartbeatTimer != null) {
+            heartbeatTimer.stop();
+        }
+        if (historyWriter != null) {
+            // История закрывается после контекста: дописываем то, что уже в очереди
+            historyWriter.shutdown();
+            try {
+                historyWriter.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public ConfigLoader getConfig() {
+        return config;
+    }
+
+    public ChatLogger getLogger() {
+        return logger;
+    }
+
+    public ClientPool getClientPool() {
+        return clientPool;
+    }
+
+    public Executor getWriterPool() {
+        return writerPool;
+    }
+
+    public MessageStore getHistory() {
+        return history;
+    }
+
+    public RoomRegistry getRooms() {
+        return rooms;
+    }
+
+    public Roster getRoster() {
+        return roster;
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public FloodGuard getFloodGuard() {
+        return floodGuard;
+    }
+
+    //Узел кластера; null - сервер работает один
+
+    public ClusterNode getCluster() {
+        return cluster;
+    }
+
+    //Администраторы (server.admins) могут выполнять служебные команды, например /stats
+    //Имя клиент выбирает сам, поэтому права есть только у подключений с этой же машины
+
+    public boolean isAdmin(String username, InetAddress address) {
+        return username != null && admins.contains(username)
+                && address != null && address.isLoopbackAddress();
+    }
+}
@@ -0,0 +1,253 @@
+package com.chat.server;
+
+import com.chat.util.ConcurrentLatencyHistogram;
+import com.chat.util.LatencyHistogram;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+//Метрики сервера: счетчики на LongAdder и гистограммы времени без блокировок
+//Запись на пути сообщения не выделяет память; снимки и перцентили считаются только при чтении
+//Доступны через JMX и командой /stats для администраторов (server.admins)
+
+public class ServerMetrics implements ServerMetricsMXBean {
+    private static final String OBJECT_NAME = "com.chat:type=ServerMetrics";
+
+    private final ClientPool clientPool;
+
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LongAdder connectionsClosed = new LongAdder();
+    private final LongAdder messagesReceived = new LongAdder();
+    private final LongAdder broadcasts = new LongAdder();
+    private final LongAdder framesQueued = new LongAdder();
+    private final LongAdder overflowDisconnects = new LongAdder();
+    private final LongAdder idleDisconnects = new LongAdder();
+    private final LongAdder socketWrites = new LongAdder();
+    private final LongAdder framesWritten = new LongAdder();
+    private final LongAdder oversizedFrames = new LongAdder();
+    private final LongAdder throttledMessages = new LongAdder();
+    private final LongAdder floodDisconnects = new LongAdder();
+
+    // Времена в наносекундах
+    private final ConcurrentLatencyHistogram decodeTime = new ConcurrentLatencyHistogram();
+    private final ConcurrentLatencyHistogram broadcastTime = new ConcurrentLatencyHistogram();
+    private final ConcurrentLatencyHistogram logWriteTime = new ConcurrentLatencyHistogram();
+
+    private ObjectName registeredName;
+
+    public ServerMetrics(ClientPool clientPool) {
+        this.clientPool = clientPool;
+    }
+
+    public void connectionOpened() {
+        connectionsOpened.increment();
+    }
+
+    public void connectionClosed() {
+        connectionsClosed.increment();
+    }
+
+    public void messageReceived() {
+        messagesReceived.increment();
+    }
+
+    public void overflowDisconnect() {
+        overflowDisconnects.increment();
+    }
+
+    //Соединение закрыто проверкой простоя (не ответило на PING)
+
+    public void idleDisconnect() {
+        idleDisconnects.increment();
+    }
+
+    //Сообщение отброшено ограничением частоты
+
+    public void messageThrottled() {
+        throttledMessages.increment();
+    }
+
+    //Соединение закрыто за флуд (слишком много отброшенных сообщений)
+
+    public void floodDisconnect() {
+        floodDisconnects.increment();
+    }
+
+    //Входящее сообщение больше max.frame.bytes пропущено
+
+    public void oversizedFrame() {
+        oversizedFrames.increment();
+    }
+
+    //Одна запись в сокет, объединившая frames кадров
+
+    public void recordSocketWrite(int frames) {
+        socketWrites.increment();
+        framesWritten.add(frames);
+    }
+
+    public void recordDecode(long nanos) {
+        decodeTime.recordValue(nanos);
+    }
+
+    public void recordBroadcast(long nanos, int recipients) {
+        broadcasts.increment();
+        framesQueued.add(recipients);
+        broadcastTime.recordValue(nanos);
+    }
+
+    public void recordLogWrite(long nanos) {
+        logWriteTime.recordValue(nanos);
+    }
+
+    //Регистрация в платформенном MBeanServer
+
+    public synchronized void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            registeredName = name;
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBean: " + e.getMessage());
+        }
+    }
+
+    public synchronized void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            System.err.println("Error unregistering metrics MBean: " + e.getMessage());
+        }
+        registeredName = null;
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    @Override
+    public long getConnectionsClosed() {
+        return connectionsClosed.sum();
+    }
+
+    @Override
+    public long getMessagesReceived() {
+        return messagesReceived.sum();
+    }
+
+    @Override
+    public long getBroadcasts() {
+        return broadcasts.sum();
+    }
+
+    @Override
+    public long getFramesQueued() {
+        return framesQueued.sum();
+    }
+
+    @Override
+    public long getOverflowDisconnects() {
+        return overflowDisconnects.sum();
+    }
+
+    @Override
+    public long getIdleDisconnects() {
+        return idleDisconnects.sum();
+    }
+
+    @Override
+    public long getSocketWrites() {
+        return socketWrites.sum();
+    }
+
+    @Override
+    public long getFramesWritten() {
+        return framesWritten.sum();
+    }
+
+    @Override
+    public long getOversizedFrames() {
+        return oversizedFrames.sum();
+    }
+
+    @Override
+    public long getThrottledMessages() {
+        return throttledMessages.sum();
+    }
+
+    @Override
+    public long getFloodDisconnects() {
+        return floodDisconnects.sum();
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return clientPool.getClientCount();
+    }
+
+    @Override
+    public long getOutboundQueueDepth() {
+        return clientPool.getOutboundQueueDepth();
+    }
+
+    @Override
+    public HistogramStats getDecodeTime() {
+        return stats(decodeTime);
+    }
+
+    @Override
+    public HistogramStats getBroadcastTime() {
+        return stats(broadcastTime);
+    }
+
+    @Override
+    public HistogramStats getLogWriteTime() {
+        return stats(logWriteTime);
+    }
+
+    private static HistogramStats stats(ConcurrentLatencyHistogram histogram) {
+        LatencyHistogram snapshot = histogram.snapshot();
+        return new HistogramStats(
+                snapshot.getTotalCount(),
+                snapshot.getMean() / 1000.0,
+                snapshot.getValueAtPercentile(50) / 1000.0,
+                snapshot.getValueAtPercentile(99) / 1000.0,
+                snapshot.getValueAtPercentile(99.9) / 1000.0,
+                snapshot.getMax() / 1000.0
+        );
+    }
+
+    //Текст для ответа на /stats
+
+    public String format() {
+        return "Server stats:" +
+                "\n  connections: active=" + getActiveConnections() +
+                " opened=" + getConnectionsOpened() +
+                " closed=" + getConnectionsClosed() +
+                " overflowDisconnects=" + getOverflowDisconnects() +
+                " idleDisconnects=" + getIdleDisconnects() +
+                " floodDisconnects=" + getFloodDisconnects() +
+                "\n  messages: received=" + getMessagesReceived() +
+                " broadcasts=" + getBroadcasts() +
+                " framesQueued=" + getFramesQueued() +
+                " oversized=" + getOversizedFrames() +
+                " throttled=" + getThrottledMessages() +
+                " outboundQueueDepth=" + getOutboundQueueDepth() +
+                "\n  writes: socketWrites=" + getSocketWrites() +
+                " framesWritten=" + getFramesWritten() +
+                "\n  decode, us: " + getDecodeTime() +
+                "\n  broadcast, us: " + getBroadcastTime() +
+                "\n  log write, us: " + getLogWriteTime();
+    }
+}
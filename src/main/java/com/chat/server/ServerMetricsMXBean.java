@@ -0,0 +1,90 @@
+package com.chat.server;
+
+//Метрики сервера в JMX (com.chat:type=ServerMetrics)
+//Времена в гистограммах - в микросекундах
+
+public interface ServerMetricsMXBean {
+    long getConnectionsOpened();
+
+    long getConnectionsClosed();
+
+    long getMessagesReceived();
+
+    long getBroadcasts();
+
+    long getFramesQueued();
+
+    long getOverflowDisconnects();
+
+    long getIdleDisconnects();
+
+    long getSocketWrites();
+
+    long getFramesWritten();
+
+    long getOversizedFrames();
+
+    long getThrottledMessages();
+
+    long getFloodDisconnects();
+
+    int getActiveConnections();
+
+    long getOutboundQueueDepth();
+
+    HistogramStats getDecodeTime();
+
+    HistogramStats getBroadcastTime();
+
+    HistogramStats getLogWriteTime();
+
+    //Сводка гистограммы (в JMX видна как CompositeData)
+
+    final class HistogramStats {
+        private final long count;
+        private final double mean;
+        private final double p50;
+        private final double p99;
+        private final double p999;
+        private final double max;
+
+        public HistogramStats(long count, double mean, double p50, double p99, double p999, double max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        public double getP999() {
+            return p999;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.1f p50=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+                    count, mean, p50, p99, p999, max);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.chat.server.history;
+
+import com.chat.model.Message;
+
+//Сообщение из истории вместе с его порядковым номером и временем записи
+
+public final class HistoryRecord {
+    private final long sequence;
+    private final long timeMillis;
+    private final Message message;
+
+    public HistoryRecord(long sequence, long timeMillis, Message message) {
+        this.sequence = sequence;
+        this.timeMillis = timeMillis;
+        this.message = message;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryRecord{" +
+                "sequence=" + sequence +
+                ", timeMillis=" + timeMillis +
+                ", message=" + message +
+                '}';
+    }
+}
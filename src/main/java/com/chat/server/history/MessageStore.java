@@ -0,0 +1,277 @@
+package com.chat.server.history;
+
+import com.chat.model.BinaryCodec;
+import com.chat.model.Message;
+import com.chat.util.ConfigLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+//Постоянная история сообщений чата: журнал только на дозапись, разбитый на сегменты
+//
+//Каждое сообщение получает порядковый номер; запись - O(1) дозапись в конец активного сегмента,
+//по заполнении history.segment.size сегмент закрывается и начинается новый.
+//Чтение по номеру или по времени: поиск сегмента, бинарный поиск по разреженному индексу
+//и короткий просмотр отображенного в память файла.
+//После перезапуска сегменты загружаются с диска, недописанный хвост отрезается.
+
+public class MessageStore {
+    private static final String DEFAULT_DIRECTORY = "./history";
+    private static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final int DEFAULT_INDEX_INTERVAL = 4096;
+    private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    private final File directory;
+    private final long segmentSize;
+    private final int indexIntervalBytes;
+    private final int maxSegments;
+
+    // Сегменты по номеру первой записи
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private volatile Segment active;
+    private long nextSequence;
+    private long lastTime = 0;
+    private boolean closed = false;
+
+    // Буферы писателя (под монитором хранилища)
+    private ByteBuffer recordBuffer = ByteBuffer.allocate(1024);
+    private final CRC32 crc = new CRC32();
+
+    //maxSegments == 0 - старые сегменты не удаляются
+
+    public MessageStore(String directory, long segmentSize, int indexIntervalBytes, int maxSegments)
+            throws IOException {
+        this.directory = new File(directory);
+        this.segmentSize = Math.max(1, Math.min(segmentSize, MAX_SEGMENT_SIZE));
+        this.indexIntervalBytes = Math.max(1, indexIntervalBytes);
+        this.maxSegments = maxSegments;
+        open();
+    }
+
+    //Хранилище с настройками из settings.txt или null, если история выключена или не открылась
+
+    public static MessageStore create(ConfigLoader config) {
+        if (!Boolean.parseBoolean(config.getProperty("history.enabled", "false"))) {
+            return null;
+        }
+        try {
+            return new MessageStore(
+                    config.getProperty("history.directory", DEFAULT_DIRECTORY),
+                    config.getSizeProperty("history.segment.size", DEFAULT_SEGMENT_SIZE),
+                    (int) config.getSizeProperty("history.index.interval", DEFAULT_INDEX_INTERVAL),
+                    config.getIntProperty("history.max.segments", 0)
+            );
+        } catch (IOException e) {
+            System.err.println("Error opening message history, history disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void open() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create history directory: " + directory.getAbsolutePath());
+        }
+
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory.toPath())) {
+            files.forEach(file -> {
+                long base = Segment.parseBaseSequence(file);
+                if (base >= 0) {
+                    bases.add(base);
+                }
+            });
+        }
+        Collections.sort(bases);
+
+        for (long base : bases) {
+            Segment segment = Segment.recover(directory, base, indexIntervalBytes);
+            Segment previous = active;
+            if (previous != null) {
+                previous.seal();
+            }
+            segments.put(base, segment);
+            active = segment;
+            // Время новых записей продолжается от последней сохраненной, даже если часы отстали
+            lastTime = Math.max(lastTime, segment.getLastTime());
+        }
+
+        if (active == null) {
+            active = Segment.create(directory, 0, indexIntervalBytes);
+            segments.put(0L, active);
+        }
+        nextSequence = active.getLastSequence() + 1;
+    }
+
+    //Сохранить сообщение; возвращает его порядковый номер
+
+    public synchronized long append(Message message) throws IOException {
+        byte[] frame = BinaryCodec.encode(message);
+        int bodyLength = frame.length - BinaryCodec.HEADER_SIZE;
+        int recordSize = Segment.RECORD_HEADER_SIZE + bodyLength;
+
+        if (active.getSize() > 0 && active.getSize() + recordSize > segmentSize) {
+            roll();
+        }
+
+        long sequence = nextSequence;
+        // Время записи не убывает, иначе поиск по времени в индексе невозможен
+        long time = Math.max(System.currentTimeMillis(), lastTime);
+
+        if (recordBuffer.capacity() < recordSize) {
+            recordBuffer = ByteBuffer.allocate(Math.max(recordSize, recordBuffer.capacity() * 2));
+        }
+        ByteBuffer record = recordBuffer;
+        record.clear();
+        record.putInt(recordSize - 8).putInt(0).putLong(sequence).putLong(time);
+        record.put(frame, BinaryCodec.HEADER_SIZE, bodyLength);
+        record.flip();
+
+        crc.reset();
+        crc.update(record.array(), 8, recordSize - 8);
+        record.putInt(4, (int) crc.getValue());
+
+        active.append(record, sequence, time);
+        nextSequence = sequence + 1;
+        lastTime = time;
+        return sequence;
+    }
+
+    private void roll() throws IOException {
+        active.seal();
+        Segment next = Segment.create(directory, nextSequence, indexIntervalBytes);
+        segments.put(nextSequence, next);
+        active = next;
+
+        // Удаляем самые старые сегменты сверх лимита
+        while (maxSegments > 0 && segments.size() > maxSegments) {
+            Map.Entry<Long, Segment> oldest = segments.pollFirstEntry();
+            oldest.getValue().delete();
+        }
+    }
+
+    //До maxRecords сообщений начиная с номера fromSequence
+
+    public List<HistoryRecord> read(long fromSequence, int maxRecords) throws IOException {
+        List<HistoryRecord> result = new ArrayList<>();
+        Long start = segments.floorKey(fromSequence);
+        if (start == null) {
+            start = segments.isEmpty() ? 0L : segments.firstKey();
+        }
+        for (Segment segment : segments.tailMap(start, true).values()) {
+            int position = segment.positionForSequence(fromSequence);
+            if (!collect(segment, position, fromSequence, Long.MIN_VALUE, maxRecords, result)) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    //До maxRecords сообщений, записанных не раньше timeMillis
+
+    public List<HistoryRecord> readFromTime(long timeMillis, int maxRecords) throws IOException {
+        List<HistoryRecord> result = new ArrayList<>();
+        Long start = null;
+        for (Segment segment : segments.values()) {
+            if (segment.firstTime() >= timeMillis) {
+                break;
+            }
+            start = segment.getBaseSequence();
+        }
+        if (start == null) {
+            start = segments.isEmpty() ? 0L : segments.firstKey();
+        }
+        for (Segment segment : segments.tailMap(start, true).values()) {
+            int position = segment.positionForTime(timeMillis);
+            if (!collect(segment, position, Long.MIN_VALUE, timeMillis, maxRecords, result)) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    //Просмотр сегмента от position; false - набрано maxRecords записей
+
+    private boolean collect(Segment segment, int position, long fromSequence, long fromTime,
+                            int maxRecords, List<HistoryRecord> result) throws IOException {
+        if (result.size() >= maxRecords) {
+            return false;
+        }
+        ByteBuffer view;
+        try {
+            view = segment.view();
+        } catch (IOException e) {
+            // Сегмент удален по лимиту во время чтения
+            return true;
+        }
+
+        byte[] body = new byte[256];
+        while (position + Segment.RECORD_HEADER_SIZE <= view.limit()) {
+            int length = view.getInt(position);
+            long sequence = view.getLong(position + 8);
+            long time = view.getLong(position + 16);
+            int next = position + 8 + length;
+
+            if (sequence >= fromSequence && time >= fromTime) {
+                int bodyLength = length - (Segment.RECORD_HEADER_SIZE - 8);
+                if (body.length < bodyLength) {
+                    body = new byte[bodyLength];
+                }
+                view.position(position + Segment.RECORD_HEADER_SIZE);
+                view.get(body, 0, bodyLength);
+                Message message = BinaryCodec.decode(body, 0, bodyLength);
+                if (message == null) {
+                    throw new IOException("Corrupted history record " + sequence);
+                }
+                result.add(new HistoryRecord(sequence, time, message));
+                if (result.size() >= maxRecords) {
+                    return false;
+                }
+            }
+            position = next;
+        }
+        return true;
+    }
+
+    //Номер первого хранящегося сообщения
+
+    public long getFirstSequence() {
+        return segments.isEmpty() ? 0 : segments.firstKey();
+    }
+
+    //Номер, который получит следующее сообщение
+
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        IOException failure = null;
+        for (Segment segment : segments.values()) {
+            try {
+                if (segment == active) {
+                    segment.force();
+                }
+                segment.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
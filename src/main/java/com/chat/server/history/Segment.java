@@ -0,0 +1,310 @@
+package com.chat.server.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+//Один сегмент истории: файл записей <base>.log и разреженный индекс <base>.idx
+//
+//Запись:         [int32 длина][int32 CRC32][int64 номер][int64 время][тело BinaryCodec]
+//                длина и CRC считаются по всему, что идет после поля CRC
+//Элемент индекса: [int64 номер][int64 время][int32 смещение записи]
+//
+//Первая запись сегмента индексируется всегда, дальше - не чаще чем раз в indexIntervalBytes
+
+final class Segment {
+    static final String LOG_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".idx";
+    static final int RECORD_HEADER_SIZE = 4 + 4 + 8 + 8;
+    static final int INDEX_ENTRY_SIZE = 8 + 8 + 4;
+
+    private final long baseSequence;
+    private final int indexIntervalBytes;
+    private final File logFile;
+    private final File indexFile;
+    private final FileChannel channel;
+    private final FileChannel indexChannel;
+    private final ByteBuffer indexEntry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+
+    // Индекс в памяти (доступ под монитором сегмента)
+    private long[] indexSequences = new long[64];
+    private long[] indexTimes = new long[64];
+    private int[] indexPositions = new int[64];
+    private int indexCount = 0;
+    private long lastIndexedPosition = -1;
+
+    // Размер подтвержденных записей: читатели видят только их
+    private volatile long size;
+    private volatile long lastSequence;
+    // Время последней записи (0 - записей нет)
+    private volatile long lastTime;
+    private volatile boolean sealed = false;
+    private MappedByteBuffer sealedView;
+
+    private Segment(File directory, long baseSequence, int indexIntervalBytes) throws IOException {
+        this.baseSequence = baseSequence;
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.logFile = new File(directory, fileName(baseSequence, LOG_SUFFIX));
+        this.indexFile = new File(directory, fileName(baseSequence, INDEX_SUFFIX));
+        this.channel = FileChannel.open(logFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.indexChannel = FileChannel.open(indexFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.lastSequence = baseSequence - 1;
+    }
+
+    static Segment create(File directory, long baseSequence, int indexIntervalBytes) throws IOException {
+        return new Segment(directory, baseSequence, indexIntervalBytes);
+    }
+
+    //Открыть существующий сегмент: загрузить индекс и проверить хвост файла
+    //Недописанная или поврежденная запись в конце (сбой во время записи) отрезается
+
+    static Segment recover(File directory, long baseSequence, int indexIntervalBytes) throws IOException {
+        Segment segment = new Segment(directory, baseSequence, indexIntervalBytes);
+        try {
+            segment.recover();
+        } catch (IOException e) {
+            segment.close();
+            throw e;
+        }
+        return segment;
+    }
+
+    private void recover() throws IOException {
+        long fileSize = channel.size();
+
+        // Элементы индекса, указывающие за конец файла, отбрасываем
+        ByteBuffer entries = ByteBuffer.allocate((int) (indexChannel.size() / INDEX_ENTRY_SIZE * INDEX_ENTRY_SIZE));
+        while (entries.hasRemaining() && indexChannel.read(entries, entries.position()) > 0) {
+            // читаем индекс целиком
+        }
+        entries.flip();
+        while (entries.remaining() >= INDEX_ENTRY_SIZE) {
+            long sequence = entries.getLong();
+            long time = entries.getLong();
+            int position = entries.getInt();
+            if (position >= fileSize || (indexCount > 0 && position <= indexPositions[indexCount - 1])) {
+                break;
+            }
+            addIndexEntry(sequence, time, position);
+        }
+
+        // Перепроверяем записи, начиная с последней проиндексированной
+        long position = indexCount > 0 ? indexPositions[indexCount - 1] : 0;
+        long sequence = indexCount > 0 ? indexSequences[indexCount - 1] - 1 : baseSequence - 1;
+        long lastTime = 0;
+        ByteBuffer view = fileSize > 0 ? channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize) : ByteBuffer.allocate(0);
+        CRC32 crc = new CRC32();
+        while (true) {
+            long recordSequence = validRecordSequence(view, (int) position, crc);
+            if (recordSequence != sequence + 1) {
+                break;
+            }
+            long time = view.getLong((int) position + 16);
+            if (indexCount == 0) {
+                addIndexEntry(recordSequence, time, (int) position);
+            }
+            sequence = recordSequence;
+            lastTime = time;
+            position += 8 + view.getInt((int) position);
+        }
+
+        // Последняя проиндексированная запись сама могла оказаться поврежденной
+        synchronized (this) {
+            while (indexCount > 0 && indexPositions[indexCount - 1] >= position) {
+                indexCount--;
+            }
+            lastIndexedPosition = indexCount > 0 ? indexPositions[indexCount - 1] : -1;
+        }
+        if (position < fileSize) {
+            channel.truncate(position);
+        }
+        indexChannel.truncate((long) indexCount * INDEX_ENTRY_SIZE);
+        this.size = position;
+        this.lastSequence = sequence;
+        this.lastTime = lastTime;
+    }
+
+    //Номер записи по смещению или -1, если записи там нет или она повреждена
+
+    static long validRecordSequence(ByteBuffer view, int position, CRC32 crc) {
+        if (position + RECORD_HEADER_SIZE > view.limit()) {
+            return -1;
+        }
+        int length = view.getInt(position);
+        if (length < RECORD_HEADER_SIZE - 8 || (long) position + 8 + length > view.limit()) {
+            return -1;
+        }
+        ByteBuffer body = view.duplicate();
+        body.position(position + 8).limit(position + 8 + length);
+        crc.reset();
+        crc.update(body);
+        if ((int) crc.getValue() != view.getInt(position + 4)) {
+            return -1;
+        }
+        return view.getLong(position + 8);
+    }
+
+    //Дописать готовую запись (вызывается только писателем MessageStore)
+
+    void append(ByteBuffer record, long sequence, long time) throws IOException {
+        long position = size;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        if (lastIndexedPosition < 0 || size - lastIndexedPosition >= indexIntervalBytes) {
+            writeIndexEntry(sequence, time, (int) size);
+        }
+        lastSequence = sequence;
+        lastTime = time;
+        size = position;
+    }
+
+    private void writeIndexEntry(long sequence, long time, int position) throws IOException {
+        indexEntry.clear();
+        indexEntry.putLong(sequence).putLong(time).putInt(position).flip();
+        long indexPosition = (long) indexCount * INDEX_ENTRY_SIZE;
+        while (indexEntry.hasRemaining()) {
+            indexPosition += indexChannel.write(indexEntry, indexPosition);
+        }
+        addIndexEntry(sequence, time, position);
+    }
+
+    private synchronized void addIndexEntry(long sequence, long time, int position) {
+        if (indexCount == indexSequences.length) {
+            int capacity = indexCount * 2;
+            indexSequences = Arrays.copyOf(indexSequences, capacity);
+            indexTimes = Arrays.copyOf(indexTimes, capacity);
+            indexPositions = Arrays.copyOf(indexPositions, capacity);
+        }
+        indexSequences[indexCount] = sequence;
+        indexTimes[indexCount] = time;
+        indexPositions[indexCount] = position;
+        indexCount++;
+        lastIndexedPosition = position;
+    }
+
+    //Смещение ближайшей проиндексированной записи с номером <= sequence
+
+    synchronized int positionForSequence(long sequence) {
+        int index = Arrays.binarySearch(indexSequences, 0, indexCount, sequence);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return index < 0 ? 0 : indexPositions[index];
+    }
+
+    //Смещение ближайшей проиндексированной записи со временем строго меньше timeMillis
+
+    synchronized int positionForTime(long timeMillis) {
+        int low = 0;
+        int high = indexCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (indexTimes[mid] < timeMillis) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found < 0 ? 0 : indexPositions[found];
+    }
+
+    synchronized long firstTime() {
+        return indexCount > 0 ? indexTimes[0] : Long.MAX_VALUE;
+    }
+
+    //Отображение подтвержденной части файла в память
+    //Закрытый сегмент отображается один раз, активный - на каждое чтение (файл растет)
+
+    ByteBuffer view() throws IOException {
+        if (sealed) {
+            synchronized (this) {
+                if (sealedView == null) {
+                    sealedView = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                }
+                return sealedView.duplicate();
+            }
+        }
+        long committed = size;
+        if (committed == 0) {
+            return ByteBuffer.allocate(0);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, committed);
+    }
+
+    //Сегмент больше не растет: сбросить на диск
+
+    void seal() throws IOException {
+        channel.force(true);
+        indexChannel.force(true);
+        sealed = true;
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+        indexChannel.force(false);
+    }
+
+    void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            indexChannel.close();
+        }
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(logFile.toPath());
+        Files.deleteIfExists(indexFile.toPath());
+    }
+
+    long getBaseSequence() {
+        return baseSequence;
+    }
+
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    long getLastTime() {
+        return lastTime;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return lastSequence < baseSequence;
+    }
+
+    static String fileName(long baseSequence, String suffix) {
+        return String.format("%020d", baseSequence) + suffix;
+    }
+
+    //Номер первой записи по имени файла сегмента или -1
+
+    static long parseBaseSequence(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(LOG_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
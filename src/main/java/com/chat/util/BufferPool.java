@@ -0,0 +1,101 @@
+package com.chat.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Пул буферов по классам размеров
+//
+//Соединение берет буфер только на время операции ввода-вывода и сразу возвращает,
+//поэтому тысячи молчащих соединений не держат по буферу каждое, а буферов в пуле столько,
+//сколько операций идет одновременно. Запрос округляется вверх до ближайшего класса;
+//больше самого крупного класса - обычное выделение мимо пула.
+//Прямые буферы (direct) читаются каналом без промежуточного копирования в JDK;
+//кучевые нужны там, где данные пишутся в OutputStream через массив
+
+public class BufferPool {
+    public static final int[] DEFAULT_SIZE_CLASSES = {1024, 8192, 65536};
+
+    private final boolean direct;
+    private final SizeClass[] classes;
+    private final AtomicLong allocated = new AtomicLong();
+
+    //maxPerClass - сколько свободных буферов каждого класса хранить (лишние достаются GC)
+
+    public BufferPool(boolean direct, int[] sizeClasses, int maxPerClass) {
+        this.direct = direct;
+        this.classes = new SizeClass[sizeClasses.length];
+        for (int i = 0; i < sizeClasses.length; i++) {
+            if (i > 0 && sizeClasses[i] <= sizeClasses[i - 1]) {
+                throw new IllegalArgumentException("Size classes must be ascending");
+            }
+            classes[i] = new SizeClass(sizeClasses[i], Math.max(1, maxPerClass));
+        }
+    }
+
+    //Пустой буфер емкостью не меньше minCapacity
+
+    public ByteBuffer acquire(int minCapacity) {
+        SizeClass sizeClass = classFor(minCapacity);
+        if (sizeClass == null) {
+            return allocate(minCapacity);
+        }
+        ByteBuffer buffer = sizeClass.free.poll();
+        return buffer != null ? buffer : allocate(sizeClass.size);
+    }
+
+    //Вернуть буфер; после этого им пользоваться нельзя
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.isDirect() != direct) {
+            return;
+        }
+        SizeClass sizeClass = classFor(buffer.capacity());
+        if (sizeClass != null && sizeClass.size == buffer.capacity()) {
+            buffer.clear();
+            sizeClass.free.offer(buffer);
+        }
+    }
+
+    //Сколько буферов пул выделил за все время
+
+    public long getAllocatedCount() {
+        return allocated.get();
+    }
+
+    //Сколько свободных буферов лежит в пуле
+
+    public int getPooledCount() {
+        int count = 0;
+        for (SizeClass sizeClass : classes) {
+            count += sizeClass.free.size();
+        }
+        return count;
+    }
+
+    private SizeClass classFor(int capacity) {
+        for (SizeClass sizeClass : classes) {
+            if (capacity <= sizeClass.size) {
+                return sizeClass;
+            }
+        }
+        return null;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        allocated.incrementAndGet();
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    //Свободные буферы одного размера (ArrayBlockingQueue не выделяет память на операцию)
+
+    private static final class SizeClass {
+        private final int size;
+        private final ArrayBlockingQueue<ByteBuffer> free;
+
+        private SizeClass(int size, int maxFree) {
+            this.size = size;
+            this.free = new ArrayBlockingQueue<>(maxFree);
+        }
+    }
+}
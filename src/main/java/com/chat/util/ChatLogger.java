@@ -1,21 +1,121 @@
 package com.chat.util;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+//Логгер чата
+//Синхронный режим: каждая запись открывает файл, дописывает строку и закрывает его
+//Асинхронный режим (log.async=true): производители только кладут записи в ограниченную
+//неблокирующую очередь, один поток-писатель держит файл открытым и сбрасывает записи пачками
+//Если задан LogRotator, файл ротируется по размеру и времени (см. log.max.size, log.rotate.interval)
 
 public class ChatLogger {
     private static final DateTimeFormatter formatter =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private static final int DEFAULT_QUEUE_CAPACITY = 65536;
+    private static final int DEFAULT_BATCH_SIZE = 512;
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = 200;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    //Что делать, если очередь асинхронного логгера заполнена
+    public enum QueueFullPolicy {
+        BLOCK,   // Ждать, пока писатель освободит место
+        DROP;    // Отбросить запись (число отброшенных попадет в лог)
+
+        public static QueueFullPolicy parse(String value, QueueFullPolicy defaultValue) {
+            if (value == null) {
+                return defaultValue;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return defaultValue;
+            }
+        }
+    }
+
     private String logFilePath;
     private Object lockObject = new Object();
 
+    // Асинхронный режим
+    private final boolean async;
+    private final Queue<LogRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long written = 0;
+    private volatile boolean flushRequested = false;
+    private volatile boolean closed = false;
+    private int queueCapacity;
+    private QueueFullPolicy queueFullPolicy;
+    private int batchSize;
+    private long flushIntervalNanos;
+    private Thread writerThread;
+    private volatile LogRotator rotator;
+
+    // Кэш отформатированной секунды (только для потока-писателя)
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedTimestamp;
+
     public ChatLogger(String logFilePath) {
         this.logFilePath = logFilePath;
+        this.async = false;
         createLogFile();
     }
 
+    public ChatLogger(String logFilePath, int queueCapacity, QueueFullPolicy queueFullPolicy,
+                      int batchSize, long flushIntervalMillis) {
+        this.logFilePath = logFilePath;
+        this.async = true;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.queueFullPolicy = queueFullPolicy;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis));
+        createLogFile();
+
+        writerThread = new Thread(this::runWriter, "ChatLogger-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    //Логгер с настройками из settings.txt
+
+    public static ChatLogger create(ConfigLoader config) {
+        ChatLogger logger;
+        // NIO-движок пишет в лог из потока цикла событий: синхронная запись в файл
+        // задержала бы все соединения цикла, поэтому там логгер всегда асинхронный
+        boolean async = Boolean.parseBoolean(config.getProperty("log.async", "false"))
+                || "nio".equals(config.getServerMode());
+        if (!async) {
+            logger = new ChatLogger(config.getFullLogPath());
+        } else {
+            logger = new ChatLogger(
+                    config.getFullLogPath(),
+                    config.getIntProperty("log.queue.capacity", DEFAULT_QUEUE_CAPACITY),
+                    QueueFullPolicy.parse(config.getProperty("log.queue.full"), QueueFullPolicy.BLOCK),
+                    config.getIntProperty("log.batch.size", DEFAULT_BATCH_SIZE),
+                    config.getIntProperty("log.flush.interval.ms", (int) DEFAULT_FLUSH_INTERVAL_MS)
+            );
+        }
+        logger.setRotator(LogRotator.create(config));
+        return logger;
+    }
+
+    public void setRotator(LogRotator rotator) {
+        this.rotator = rotator;
+    }
+
     private void createLogFile() {
         try {
             File file = new File(logFilePath);
@@ -41,7 +141,21 @@ public class ChatLogger {
 
 
     public void log(String message) {
+        if (async && !closed) {
+            enqueue(new LogRecord(System.currentTimeMillis(), message));
+            return;
+        }
+        writeSync(message);
+    }
+
+    private void writeSync(String message) {
         synchronized (lockObject) {
+            LogRotator currentRotator = rotator;
+            if (currentRotator != null
+                    && currentRotator.shouldRotate(new File(logFilePath).length(), System.currentTimeMillis())) {
+                currentRotator.rotate();
+            }
+
             try (FileWriter fw = new FileWriter(logFilePath, true);
                  BufferedWriter bw = new BufferedWriter(fw);
                  PrintWriter pw = new PrintWriter(bw)) {
@@ -56,9 +170,200 @@ public class ChatLogger {
         }
     }
 
+    private void enqueue(LogRecord record) {
+        while (queueSize.incrementAndGet() > queueCapacity) {
+            queueSize.decrementAndGet();
+            if (queueFullPolicy == QueueFullPolicy.DROP || closed) {
+                dropped.incrementAndGet();
+                return;
+            }
+            // BLOCK: будим писателя и ждем освобождения места
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        }
+        queue.add(record);
+        enqueued.incrementAndGet();
+
+        // Набралась полная пачка - не ждем таймера
+        if (queueSize.get() >= batchSize) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    //Поток-писатель: файл открыт все время, сброс на диск по размеру пачки или по времени
+
+    private void runWriter() {
+        StringBuilder line = new StringBuilder(256);
+        long lastFlush = System.nanoTime();
+        int unflushed = 0;
+        long writtenLocal = 0;
+        long reportedDropped = 0;
+
+        Writer out = openWriter();
+        while (true) {
+            boolean stop = closed;
+
+            LogRecord record;
+            int drained = 0;
+            while (drained < batchSize && (record = queue.poll()) != null) {
+                queueSize.decrementAndGet();
+                writeRecord(out, line, record);
+                drained++;
+            }
+            unflushed += drained;
+            writtenLocal += drained;
+
+            long droppedTotal = dropped.get();
+            if (droppedTotal > reportedDropped) {
+                writeRecord(out, line, new LogRecord(System.currentTimeMillis(),
+                        "[SYSTEM] SYSTEM: Log queue full, dropped " + (droppedTotal - reportedDropped) + " records"));
+                reportedDropped = droppedTotal;
+            }
+
+            long now = System.nanoTime();
+            boolean timeToFlush = unflushed > 0 && now - lastFlush >= flushIntervalNanos;
+            if (unflushed >= batchSize || timeToFlush || flushRequested || (stop && unflushed > 0)) {
+                flushWriter(out);
+                unflushed = 0;
+                lastFlush = now;
+                written = writtenLocal;
+            }
+
+            // Ротация между пачками: производители в это время продолжают писать в очередь
+            LogRotator currentRotator = rotator;
+            if (currentRotator != null && unflushed == 0
+                    && currentRotator.shouldRotate(new File(logFilePath).length(), System.currentTimeMillis())) {
+                closeWriter(out);
+                currentRotator.rotate();
+                out = openWriter();
+            }
+            if (flushRequested && unflushed == 0 && queue.isEmpty()) {
+                written = writtenLocal;
+                flushRequested = false;
+            }
+
+            if (stop && queue.isEmpty()) {
+                break;
+            }
+            if (drained < batchSize && queue.isEmpty()) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+
+        written = writtenLocal;
+        closeWriter(out);
+    }
+
+    private void closeWriter(Writer out) {
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.err.println("Error closing log file: " + e.getMessage());
+        }
+    }
+
+    private Writer openWriter() {
+        try {
+            return new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(logFilePath, true), StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        } catch (IOException e) {
+            System.err.println("Error opening log file: " + e.getMessage());
+            return Writer.nullWriter();
+        }
+    }
+
+    private void writeRecord(Writer out, StringBuilder line, LogRecord record) {
+        line.setLength(0);
+        line.append('[').append(formatTimestamp(record.timeMillis)).append("] ")
+                .append(record.message).append(System.lineSeparator());
+        try {
+            out.append(line);
+        } catch (IOException e) {
+            System.err.println("Error writing to log file: " + e.getMessage());
+        }
+    }
+
+    private void flushWriter(Writer out) {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing to log file: " + e.getMessage());
+        }
+    }
+
+    private String formatTimestamp(long timeMillis) {
+        long second = timeMillis / 1000;
+        if (second != cachedSecond) {
+            cachedTimestamp = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault())
+                    .format(formatter);
+            cachedSecond = second;
+        }
+        return cachedTimestamp;
+    }
+
+    //Дождаться, пока все записи, сделанные до вызова, окажутся в файле
+
+    public void flush() {
+        if (!async) {
+            return;
+        }
+        long target = enqueued.get();
+        while (written < target && writerThread.isAlive()) {
+            flushRequested = true;
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    //Записать остаток очереди и закрыть файл; дальнейшие записи идут синхронно
+
+    public void close() {
+        if (!async || closed) {
+            closeRotator();
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Записи, успевшие попасть в очередь во время закрытия, - тем же путем, что у писателя,
+        // со временем их создания, а не временем закрытия
+        if (!queue.isEmpty()) {
+            synchronized (lockObject) {
+                Writer out = openWriter();
+                StringBuilder line = new StringBuilder(256);
+                LogRecord record;
+                while ((record = queue.poll()) != null) {
+                    queueSize.decrementAndGet();
+                    writeRecord(out, line, record);
+                }
+                closeWriter(out);
+            }
+        }
+        closeRotator();
+    }
+
+    private void closeRotator() {
+        LogRotator currentRotator = rotator;
+        if (currentRotator != null) {
+            currentRotator.close();
+        }
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
     public void log(String username, String messageType, String content) {
-        String logMessage = String.format("[%s] %s: %s", messageType, username, content);
-        log(logMessage);
+        log("[" + messageType + "] " + username + ": " + content);
     }
 
 
@@ -82,4 +387,14 @@ public class ChatLogger {
     public String getLogFilePath() {
         return logFilePath;
     }
-}
\ No newline at end of file
+
+    private static final class LogRecord {
+        private final long timeMillis;
+        private final String message;
+
+        private LogRecord(long timeMillis, String message) {
+            this.timeMillis = timeMillis;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.chat.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//Потокобезопасная гистограмма с теми же интервалами, что у LatencyHistogram
+//Запись из любого потока без блокировок и без выделения памяти,
+//перцентили считаются по снимку snapshot()
+
+public class ConcurrentLatencyHistogram {
+    private final AtomicLongArray counts = new AtomicLongArray(LatencyHistogram.bucketCount());
+    private final LongAdder totalCount = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final DoubleAdder sumOfSquares = new DoubleAdder();
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void recordValue(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(LatencyHistogram.indexOf(value));
+        totalCount.increment();
+        sum.add(value);
+        sumOfSquares.add((double) value * value);
+        min.accumulate(value);
+        max.accumulate(value);
+    }
+
+    public long getTotalCount() {
+        return totalCount.sum();
+    }
+
+    //Копия текущего состояния (записи, идущие во время копирования, могут попасть частично)
+
+    public LatencyHistogram snapshot() {
+        LatencyHistogram snapshot = new LatencyHistogram();
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            if (count > 0) {
+                snapshot.addBucket(i, count);
+            }
+        }
+        snapshot.setStatistics(min.get(), max.get(), sum.sum(), sumOfSquares.sum());
+        return snapshot;
+    }
+}
@@ -17,6 +17,8 @@ public class ConfigLoader {
     private static final String DEFAULT_LOG_DIRECTORY = "./logs";
     private static final String DEFAULT_CLIENT_HOST = "localhost";
     private static final int DEFAULT_CLIENT_PORT = 9090;
+    private static final String DEFAULT_SERVER_MODE = "blocking";
+    private static final String DEFAULT_CLIENT_PROTOCOL = "json";
 
     private Map<String, String> config;
 
@@ -25,6 +27,12 @@ public class ConfigLoader {
         loadConfig();
     }
 
+    //Конфигурация из готовых значений, без чтения settings.txt
+
+    public ConfigLoader(Map<String, String> properties) {
+        this.config = new HashMap<>(properties);
+    }
+
     private void loadConfig() {
         try (BufferedReader reader = new BufferedReader(new FileReader(CONFIG_FILE))) {
             String line;
@@ -63,6 +71,16 @@ public class ConfigLoader {
         }
     }
 
+    //Движок сервера: blocking (поток на клиента) или nio (селекторы)
+
+    public String getServerMode() {
+        return config.getOrDefault("server.mode", DEFAULT_SERVER_MODE).toLowerCase();
+    }
+
+    public int getNioThreads() {
+        return getIntProperty("server.nio.threads", Runtime.getRuntime().availableProcessors());
+    }
+
     public String getClientServerHost() {
         return config.getOrDefault("client.server.host", DEFAULT_CLIENT_HOST);
     }
@@ -76,6 +94,12 @@ public class ConfigLoader {
         }
     }
 
+    //Протокол клиента: json или binary (двоичный согласуется с сервером при подключении)
+
+    public String getClientProtocol() {
+        return config.getOrDefault("client.protocol", DEFAULT_CLIENT_PROTOCOL).toLowerCase();
+    }
+
     public String getLogFile() {
         return config.getOrDefault("log.file", DEFAULT_LOG_FILE);
     }
@@ -101,6 +125,65 @@ public class ConfigLoader {
         return config.getOrDefault(key, defaultValue);
     }
 
+    public int getIntProperty(String key, int defaultValue) {
+        String value = config.get(key);
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    //Размер в байтах: 1048576, 512K, 10M, 1G
+
+    public long getSizeProperty(String key, long defaultValue) {
+        String value = config.get(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        long multiplier = 1;
+        char unit = Character.toUpperCase(value.charAt(value.length() - 1));
+        if (unit == 'K') {
+            multiplier = 1024L;
+        } else if (unit == 'M') {
+            multiplier = 1024L * 1024;
+        } else if (unit == 'G') {
+            multiplier = 1024L * 1024 * 1024;
+        }
+        try {
+            String number = multiplier == 1 ? value : value.substring(0, value.length() - 1);
+            return Long.parseLong(number.trim()) * multiplier;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    //Длительность в миллисекундах: 500, 30s, 10m, 1h, 1d
+
+    public long getDurationProperty(String key, long defaultValue) {
+        String value = config.get(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        long multiplier = 1;
+        char unit = Character.toLowerCase(value.charAt(value.length() - 1));
+        if (unit == 's') {
+            multiplier = 1000L;
+        } else if (unit == 'm') {
+            multiplier = 60 * 1000L;
+        } else if (unit == 'h') {
+            multiplier = 60 * 60 * 1000L;
+        } else if (unit == 'd') {
+            multiplier = 24 * 60 * 60 * 1000L;
+        }
+        try {
+            String number = multiplier == 1 ? value : value.substring(0, value.length() - 1);
+            return Long.parseLong(number.trim()) * multiplier;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     @Override
     public String toString() {
         return "ConfigLoader{" +
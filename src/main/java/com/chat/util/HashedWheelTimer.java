@@ -0,0 +1,239 @@
+package com.chat.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Таймер на хешированном колесе: один поток обслуживает любое число таймаутов
+//
+//Колесо - массив корзин по tickMillis; таймаут попадает в корзину (срок / tick) % размер
+//и хранит число оставшихся оборотов. Постановка и отмена - O(1), на каждом тике
+//просматривается одна корзина. Точность - один тик, поэтому таймер подходит для
+//проверок простоя соединений, а не для точных задержек.
+//Задачи выполняются в потоке таймера и должны быть короткими; поток запускается первой задачей
+
+public class HashedWheelTimer {
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread worker;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final long startTime;
+    private volatile boolean isRunning = true;
+
+    // Номер текущего тика (только поток таймера)
+    private long tick = 0;
+
+    public HashedWheelTimer(String name, long tickMillis, int wheelSize) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        // Размер колеса - степень двойки, чтобы корзина считалась маской
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) * 2 - 1);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+    }
+
+    //Выполнить task через delayMillis (с точностью до тика)
+
+    public Timeout schedule(Runnable task, long delayMillis) {
+        long deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        Timeout timeout = new Timeout(this, task, deadline);
+        pending.incrementAndGet();
+        added.add(timeout);
+        if (!started.get() && started.compareAndSet(false, true)) {
+            worker.start();
+        }
+        return timeout;
+    }
+
+    //Число запланированных и еще не выполненных таймаутов
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    public void stop() {
+        isRunning = false;
+        if (started.get()) {
+            worker.interrupt();
+        }
+    }
+
+    private void run() {
+        // Поток мог запуститься позже создания таймера: пропущенные тики не проходим
+        tick = (System.nanoTime() - startTime) / tickNanos;
+        while (isRunning) {
+            if (!waitForNextTick()) {
+                break;
+            }
+            processCancelled();
+            transferAdded();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    private boolean waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos <= 0) {
+                return true;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (!isRunning) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    //Новые таймауты раскладываются по корзинам (за один тик - не больше 100000, чтобы тик не затягивался)
+
+    private void transferAdded() {
+        for (int i = 0; i < 100000; i++) {
+            Timeout timeout = added.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() != Timeout.ST_WAITING) {
+                continue;
+            }
+            long ticks = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            // Просроченный таймаут выполнится на текущем тике
+            long target = Math.max(ticks, tick);
+            wheel[(int) (target & mask)].add(timeout);
+        }
+    }
+
+    private void processCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    //Запланированная задача; cancel() можно вызывать из любого потока
+
+    public static final class Timeout {
+        private static final int ST_WAITING = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(ST_WAITING);
+
+        // Список корзины (только поток таймера)
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public boolean cancel() {
+            if (!state.compareAndSet(ST_WAITING, ST_CANCELLED)) {
+                return false;
+            }
+            timer.pending.decrementAndGet();
+            timer.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == ST_EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(ST_WAITING, ST_EXPIRED)) {
+                return;
+            }
+            timer.pending.decrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("[HashedWheelTimer] Task failed: " + e.getMessage());
+            }
+        }
+    }
+
+    //Двусвязный список таймаутов одной корзины
+
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        //Выполнить таймауты текущего оборота, остальным уменьшить число оборотов
+
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.next = null;
+            timeout.prev = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.chat.util;
+
+import java.io.PrintStream;
+
+//Гистограмма задержек в духе HdrHistogram: логарифмические интервалы,
+//внутри каждого - 64 линейных поддиапазона, поэтому погрешность значения не больше ~1.6%
+//при фиксированной памяти (~30 КБ) на весь диапазон long
+//Не потокобезопасна: каждый поток ведет свою гистограмму, в конце они объединяются через add()
+
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;       // 128
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;        // 64
+    private static final int BUCKET_COUNT = 64 - SUB_BUCKET_BITS + 1;
+
+    private final long[] counts = new long[bucketCount()];
+    private long totalCount = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+    private double sum = 0;
+    private double sumOfSquares = 0;
+
+    public void recordValue(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        sumOfSquares += (double) value * value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    //Значение, не меньше которого percentile процентов записей (как в HdrHistogram -
+    //верхняя граница интервала, но не больше максимума)
+
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    public double getStdDeviation() {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double mean = getMean();
+        return Math.sqrt(Math.max(0, sumOfSquares / totalCount - mean * mean));
+    }
+
+    //Таблица распределения в формате HdrHistogram: значение, перцентиль, число записей, 1/(1-p)
+    //scale - делитель значений при выводе (например 1000.0 для перевода мкс в мс)
+
+    public void outputPercentileDistribution(PrintStream out, double scale) {
+        out.printf("%12s %14s %10s %14s%n", "Value", "Percentile", "TotalCount", "1/(1-Percentile)");
+        out.println();
+        if (totalCount == 0) {
+            return;
+        }
+        // Шаг по перцентилям уменьшается вдвое на каждой "половине" оставшегося хвоста
+        double percentile = 0;
+        double step = 10;
+        long printed = -1;
+        while (true) {
+            long value = getValueAtPercentile(percentile);
+            long count = countAtOrBelow(value);
+            double reported = 100.0 * count / totalCount;
+            if (count >= totalCount) {
+                out.printf("%12.3f %14.12f %10d %14s%n", value / scale, 1.0, count, "");
+                break;
+            }
+            // Один интервал гистограммы печатаем один раз
+            if (count != printed) {
+                out.printf("%12.3f %14.12f %10d %14.2f%n",
+                        value / scale, reported / 100.0, count, 1.0 / (1.0 - reported / 100.0));
+                printed = count;
+            }
+            percentile += step;
+            if (100.0 - percentile <= step * 2 && step > 0.0001) {
+                step /= 2;
+            }
+            if (percentile >= 100.0 - 1e-9) {
+                percentile = 100.0;
+            }
+        }
+        out.printf("#[Mean    = %12.3f, StdDeviation   = %12.3f]%n", getMean() / scale, getStdDeviation() / scale);
+        out.printf("#[Max     = %12.3f, Total count    = %12d]%n", max / scale, totalCount);
+    }
+
+    //Заполнение снимка из ConcurrentLatencyHistogram
+
+    void addBucket(int index, long count) {
+        counts[index] += count;
+        totalCount += count;
+    }
+
+    void setStatistics(long min, long max, double sum, double sumOfSquares) {
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.sumOfSquares = sumOfSquares;
+    }
+
+    static int bucketCount() {
+        return SUB_BUCKET_COUNT + BUCKET_COUNT * SUB_BUCKET_HALF;
+    }
+
+    private long countAtOrBelow(long value) {
+        long count = 0;
+        int last = indexOf(value);
+        for (int i = 0; i <= last; i++) {
+            count += counts[i];
+        }
+        return count;
+    }
+
+    //Первые 128 значений - точно, дальше интервалы [64·2^k, 128·2^k) по 64 поддиапазона
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (subBucket - SUB_BUCKET_HALF);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,182 @@
+package com.chat.util;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+//Ротация файла логов по размеру и по времени
+//Закрытый сегмент переименовывается (file.log.20260111-230000), сжимается в .gz в фоновом потоке,
+//после чего старые архивы удаляются по количеству или суммарному размеру
+
+public class LogRotator {
+    private static final DateTimeFormatter SEGMENT_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String ARCHIVE_SUFFIX = ".gz";
+
+    private final File logFile;
+    private final long maxSizeBytes;
+    private final long intervalMillis;
+    private final int retentionCount;
+    private final long retentionBytes;
+    private final ExecutorService compressor;
+    private volatile long segmentStart;
+
+    //0 в любом параметре - ограничение отключено
+
+    public LogRotator(String logFilePath, long maxSizeBytes, long intervalMillis,
+                      int retentionCount, long retentionBytes) {
+        this.logFile = new File(logFilePath);
+        this.maxSizeBytes = maxSizeBytes;
+        this.intervalMillis = intervalMillis;
+        this.retentionCount = retentionCount;
+        this.retentionBytes = retentionBytes;
+        this.segmentStart = System.currentTimeMillis();
+        this.compressor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "ChatLogger-compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    //Ротатор с настройками из settings.txt или null, если ротация не настроена
+
+    public static LogRotator create(ConfigLoader config) {
+        long maxSize = config.getSizeProperty("log.max.size", 0);
+        long interval = config.getDurationProperty("log.rotate.interval", 0);
+        if (maxSize <= 0 && interval <= 0) {
+            return null;
+        }
+        return new LogRotator(
+                config.getFullLogPath(),
+                maxSize,
+                interval,
+                config.getIntProperty("log.retention.count", 0),
+                config.getSizeProperty("log.retention.bytes", 0)
+        );
+    }
+
+    public boolean shouldRotate(long currentSize, long now) {
+        if (maxSizeBytes > 0 && currentSize >= maxSizeBytes) {
+            return true;
+        }
+        return intervalMillis > 0 && now - segmentStart >= intervalMillis && currentSize > 0;
+    }
+
+    //Закрыть текущий сегмент: файл уже должен быть закрыт вызывающим
+    //Переименование быстрое, сжатие и удаление старых архивов выполняются в фоне
+
+    public void rotate() {
+        segmentStart = System.currentTimeMillis();
+        if (!logFile.exists() || logFile.length() == 0) {
+            return;
+        }
+
+        File segment = nextSegmentFile();
+        if (!logFile.renameTo(segment)) {
+            System.err.println("Failed to rotate log file: " + logFile.getPath());
+            return;
+        }
+        try {
+            if (!logFile.createNewFile()) {
+                System.err.println("Failed to create log file: " + logFile.getPath());
+            }
+        } catch (IOException e) {
+            System.err.println("Error creating log file: " + e.getMessage());
+        }
+
+        try {
+            compressor.execute(() -> {
+                compress(segment);
+                enforceRetention();
+            });
+        } catch (RejectedExecutionException e) {
+            // Ротатор уже закрыт - сегмент остается несжатым
+        }
+    }
+
+    private File nextSegmentFile() {
+        String base = logFile.getPath() + "." + LocalDateTime.now().format(SEGMENT_FORMAT);
+        File candidate = new File(base);
+        int suffix = 1;
+        while (candidate.exists() || new File(candidate.getPath() + ARCHIVE_SUFFIX).exists()) {
+            candidate = new File(base + "-" + suffix++);
+        }
+        return candidate;
+    }
+
+    private void compress(File segment) {
+        File archive = new File(segment.getPath() + ARCHIVE_SUFFIX);
+        File temp = new File(archive.getPath() + ".tmp");
+        try (InputStream in = new BufferedInputStream(new FileInputStream(segment));
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(temp), 64 * 1024)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            System.err.println("Error compressing log segment: " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(segment.toPath());
+        } catch (IOException e) {
+            System.err.println("Error finalizing log archive: " + e.getMessage());
+        }
+    }
+
+    //Удалить самые старые архивы сверх лимитов
+
+    private void enforceRetention() {
+        if (retentionCount <= 0 && retentionBytes <= 0) {
+            return;
+        }
+        File[] archives = listArchives();
+        Arrays.sort(archives, Comparator.comparingLong(File::lastModified).thenComparing(File::getName));
+
+        long totalBytes = 0;
+        for (File archive : archives) {
+            totalBytes += archive.length();
+        }
+
+        int remaining = archives.length;
+        for (File archive : archives) {
+            boolean overCount = retentionCount > 0 && remaining > retentionCount;
+            boolean overBytes = retentionBytes > 0 && totalBytes > retentionBytes;
+            if (!overCount && !overBytes) {
+                break;
+            }
+            long size = archive.length();
+            if (archive.delete()) {
+                totalBytes -= size;
+                remaining--;
+            }
+        }
+    }
+
+    File[] listArchives() {
+        File directory = logFile.getAbsoluteFile().getParentFile();
+        String prefix = logFile.getName() + ".";
+        File[] archives = directory.listFiles((dir, name) ->
+                name.startsWith(prefix) && name.endsWith(ARCHIVE_SUFFIX));
+        return archives != null ? archives : new File[0];
+    }
+
+    //Дождаться завершения фонового сжатия
+
+    public void close() {
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
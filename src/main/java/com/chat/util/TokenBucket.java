@@ -0,0 +1,51 @@
+package com.chat.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//Ведро токенов в форме GCRA (generic cell rate algorithm)
+//
+//Вместо числа токенов хранится одно значение - теоретическое время прихода следующего
+//сообщения (TAT). Сообщение пропускается, если TAT опережает текущее время не больше
+//чем на (burst - 1) интервалов, и сдвигает TAT на один интервал. Проверка - одно сравнение
+//и CAS на AtomicLong: без блокировок и без выделения памяти, ведро можно делить между потоками
+
+public class TokenBucket {
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    //ratePerSecond - скорость пополнения, burst - сколько сообщений можно отправить подряд
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + ratePerSecond);
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.toleranceNanos = intervalNanos * (Math.max(1, burst) - 1);
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    //nowNanos - System.nanoTime(), передается, чтобы несколько ведер проверялись по одному времени
+
+    public boolean tryAcquire(long nowNanos) {
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long start = tat == Long.MIN_VALUE || tat - nowNanos < 0 ? nowNanos : tat;
+            if (start - nowNanos > toleranceNanos) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(tat, start + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    //Вернуть токен, взятый успешным tryAcquire(): TAT сдвигается на интервал назад
+
+    public void release() {
+        theoreticalArrival.addAndGet(-intervalNanos);
+    }
+}
@@ -0,0 +1,118 @@
+package com.chat.model;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class BinaryCodecTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Message message = new Message(
+                Message.MessageType.MESSAGE,
+                "Пользователь",
+                "Line1\nLine2 with \"quotes\"",
+                "2026-01-11 23:00:00"
+        );
+        byte[] frame = BinaryCodec.encode(message);
+
+        FrameDecoder decoder = new FrameDecoder();
+        decoder.setBinary(true);
+        Message decoded = decoder.decode(ByteBuffer.wrap(frame));
+
+        assertEquals(message.getType(), decoded.getType());
+        assertEquals(message.getUsername(), decoded.getUsername());
+        assertEquals(message.getContent(), decoded.getContent());
+        assertEquals(message.getTimestamp(), decoded.getTimestamp());
+    }
+
+    @Test
+    public void testNullFields() {
+        byte[] frame = BinaryCodec.encode(new Message(Message.MessageType.PING, null, null, null));
+        Message decoded = BinaryCodec.decode(frame, BinaryCodec.HEADER_SIZE, frame.length - BinaryCodec.HEADER_SIZE);
+
+        assertEquals(Message.MessageType.PING, decoded.getType());
+        assertNull(decoded.getUsername());
+        assertNull(decoded.getContent());
+        assertNull(decoded.getTimestamp());
+    }
+
+    @Test
+    public void testRoomField() {
+        Message message = new Message(Message.MessageType.MESSAGE, "User1", "Hello", "2026-01-11 23:00:00");
+        message.setRoom("java");
+        byte[] frame = BinaryCodec.encode(message);
+        Message decoded = BinaryCodec.decode(frame, BinaryCodec.HEADER_SIZE, frame.length - BinaryCodec.HEADER_SIZE);
+
+        assertEquals("java", decoded.getRoom());
+        assertEquals("Hello", decoded.getContent());
+    }
+
+    @Test
+    public void testVersionField() {
+        Message message = new Message(Message.MessageType.PRESENCE, "SERVER", "+alice\n-bob");
+        message.setVersion(300L);
+        byte[] frame = BinaryCodec.encode(message);
+        Message decoded = BinaryCodec.decode(frame, BinaryCodec.HEADER_SIZE, frame.length - BinaryCodec.HEADER_SIZE);
+
+        assertEquals(Long.valueOf(300), decoded.getVersion());
+        assertNull(decoded.getRoom());
+        assertEquals("+alice\n-bob", decoded.getContent());
+    }
+
+    @Test
+    public void testCorruptedBody() {
+        byte[] body = {(byte) Message.MessageType.MESSAGE.ordinal(), 100};
+        assertNull(BinaryCodec.decode(body, 0, body.length));
+    }
+
+    @Test
+    public void testDecoderHandlesSplitFrames() throws Exception {
+        byte[] frame = BinaryCodec.encode(new Message(Message.MessageType.MESSAGE, "User", "Hello"));
+        FrameDecoder decoder = new FrameDecoder();
+        decoder.setBinary(true);
+
+        // Кадр приходит по одному байту
+        Message decoded = null;
+        for (int i = 0; i < frame.length; i++) {
+            Message result = decoder.decode(ByteBuffer.wrap(frame, i, 1));
+            if (i < frame.length - 1) {
+                assertNull(result);
+            } else {
+                decoded = result;
+            }
+        }
+        assertNotNull(decoded);
+        assertEquals("Hello", decoded.getContent());
+    }
+
+    @Test
+    public void testDecoderSwitchesProtocolBetweenFrames() throws Exception {
+        byte[] json = "{\"type\":\"CONNECT\",\"username\":\"User\"}\n".getBytes(StandardCharsets.UTF_8);
+        byte[] binary = BinaryCodec.encode(new Message(Message.MessageType.MESSAGE, "User", "Binary"));
+
+        ByteBuffer input = ByteBuffer.allocate(json.length + binary.length);
+        input.put(json).put(binary).flip();
+
+        FrameDecoder decoder = new FrameDecoder();
+        Message connect = decoder.decode(input);
+        assertEquals(Message.MessageType.CONNECT, connect.getType());
+
+        decoder.setBinary(true);
+        Message message = decoder.decode(input);
+        assertEquals("Binary", message.getContent());
+        assertFalse(input.hasRemaining());
+    }
+
+    @Test
+    public void testProtocolFieldInJson() {
+        Message connect = new Message(Message.MessageType.CONNECT, "User", "Hi");
+        connect.setProtocol(BinaryCodec.PROTOCOL);
+
+        Message decoded = Message.fromJson(connect.toJson());
+        assertEquals(BinaryCodec.PROTOCOL, decoded.getProtocol());
+    }
+}
@@ -0,0 +1,110 @@
+package com.chat.model;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameDecoderTest {
+
+    private static String line(String content) {
+        return "{\"type\":\"MESSAGE\",\"username\":\"User\",\"content\":\"" + content + "\"}\n";
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @Test
+    public void testOversizedLineIsSkipped() throws Exception {
+        FrameDecoder decoder = new FrameDecoder();
+        decoder.setMaxFrameBytes(100);
+        List<Integer> rejected = new ArrayList<>();
+        decoder.setOversizedListener(rejected::add);
+
+        String big = line(repeat('x', 1000));
+        byte[] input = (big + line("after")).getBytes(StandardCharsets.UTF_8);
+
+        // Длинная строка приходит кусками, следующее сообщение должно разобраться
+        Message decoded = null;
+        for (int i = 0; i < input.length && decoded == null; i += 64) {
+            ByteBuffer chunk = ByteBuffer.wrap(input, i, Math.min(64, input.length - i));
+            decoded = decoder.decode(chunk);
+            while (decoded == null && chunk.hasRemaining()) {
+                decoded = decoder.decode(chunk);
+            }
+        }
+
+        assertNotNull(decoded);
+        assertEquals("after", decoded.getContent());
+        assertEquals(Arrays.asList(big.length() - 1), rejected);
+    }
+
+    @Test
+    public void testOversizedLineInOneBufferIsSkipped() throws Exception {
+        FrameDecoder decoder = new FrameDecoder();
+        decoder.setMaxFrameBytes(100);
+        List<Integer> rejected = new ArrayList<>();
+        decoder.setOversizedListener(rejected::add);
+
+        String big = line(repeat('x', 1000));
+        ByteBuffer input = ByteBuffer.wrap((big + line("after")).getBytes(StandardCharsets.UTF_8));
+        Message decoded = decoder.decode(input);
+
+        assertEquals("after", decoded.getContent());
+        assertFalse(input.hasRemaining());
+        assertEquals(Arrays.asList(big.length() - 1), rejected);
+    }
+
+    @Test
+    public void testOversizedBinaryFrameIsSkipped() throws Exception {
+        byte[] big = BinaryCodec.encode(new Message(Message.MessageType.MESSAGE, "User", repeat('x', 1000)));
+        byte[] small = BinaryCodec.encode(new Message(Message.MessageType.MESSAGE, "User", "after"));
+        ByteBuffer input = ByteBuffer.allocate(big.length + small.length);
+        input.put(big).put(small).flip();
+
+        FrameDecoder decoder = new FrameDecoder();
+        decoder.setBinary(true);
+        decoder.setMaxFrameBytes(100);
+        List<Integer> rejected = new ArrayList<>();
+        decoder.setOversizedListener(rejected::add);
+
+        Message decoded = decoder.decode(input);
+
+        assertEquals("after", decoded.getContent());
+        assertFalse(input.hasRemaining());
+        assertEquals(Arrays.asList(big.length - BinaryCodec.HEADER_SIZE), rejected);
+    }
+
+    @Test
+    public void testMultiByteCharacterSplitAcrossReads() throws Exception {
+        byte[] input = line("Привет, мир").getBytes(StandardCharsets.UTF_8);
+        FrameDecoder decoder = new FrameDecoder();
+
+        // Граница чтения проходит внутри двухбайтового символа
+        int split = line("П").indexOf('П') + 1;
+        assertNull(decoder.decode(ByteBuffer.wrap(input, 0, split)));
+        Message decoded = decoder.decode(ByteBuffer.wrap(input, split, input.length - split));
+
+        assertEquals("Привет, мир", decoded.getContent());
+    }
+
+    @Test
+    public void testMalformedUtf8IsReplaced() throws Exception {
+        byte[] prefix = "{\"type\":\"MESSAGE\",\"content\":\"a".getBytes(StandardCharsets.UTF_8);
+        byte[] suffix = "b\"}\n".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer input = ByteBuffer.allocate(prefix.length + 1 + suffix.length);
+        input.put(prefix).put((byte) 0xFF).put(suffix).flip();
+
+        Message decoded = new FrameDecoder().decode(input);
+
+        assertEquals("a�b", decoded.getContent());
+    }
+}
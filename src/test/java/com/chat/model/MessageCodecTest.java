@@ -0,0 +1,113 @@
+package com.chat.model;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MessageCodecTest {
+
+    @Test
+    public void testEncodeMatchesGson() {
+        Message message = new Message(
+                Message.MessageType.MESSAGE,
+                "User \"quoted\"",
+                "line1\nline2\t<b>&'=' \\ \u0001   юникод",
+                "2026-01-11 23:00:00"
+        );
+        assertEquals(new Gson().toJson(message), MessageCodec.encode(message));
+    }
+
+    @Test
+    public void testEncodeSkipsNullFields() {
+        Message message = new Message(Message.MessageType.PING, null, null, null);
+        assertEquals("{\"type\":\"PING\"}", MessageCodec.encode(message));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Message message = new Message(
+                Message.MessageType.SYSTEM,
+                "SERVER",
+                "Escapes: \" \\ / \n é 😀",
+                "2026-01-11 23:00:00"
+        );
+        Message decoded = MessageCodec.decode(MessageCodec.encode(message));
+
+        assertEquals(message.getType(), decoded.getType());
+        assertEquals(message.getUsername(), decoded.getUsername());
+        assertEquals(message.getContent(), decoded.getContent());
+        assertEquals(message.getTimestamp(), decoded.getTimestamp());
+    }
+
+    @Test
+    public void testRoomField() {
+        Message message = new Message(Message.MessageType.JOIN, "User1", "/join java", "2026-01-11 23:00:00");
+        message.setRoom("java");
+        String json = MessageCodec.encode(message);
+
+        assertEquals(new Gson().toJson(message), json);
+        assertEquals("java", MessageCodec.decode(json).getRoom());
+    }
+
+    @Test
+    public void testVersionField() {
+        Message message = new Message(Message.MessageType.USER_LIST, "SERVER", "Active users: a", "2026-01-11 23:00:00");
+        message.setVersion(42L);
+        String json = MessageCodec.encode(message);
+
+        assertEquals(new Gson().toJson(message), json);
+        assertEquals(Long.valueOf(42), MessageCodec.decode(json).getVersion());
+        assertNull(MessageCodec.decode("{\"type\":\"USER_LIST\",\"version\":null}").getVersion());
+    }
+
+    @Test
+    public void testDecodeGsonOutput() {
+        Message message = new Message(Message.MessageType.CONNECT, "User<1>", "Hi & bye");
+        Message decoded = MessageCodec.decode(new Gson().toJson(message));
+
+        assertEquals(Message.MessageType.CONNECT, decoded.getType());
+        assertEquals("User<1>", decoded.getUsername());
+        assertEquals("Hi & bye", decoded.getContent());
+    }
+
+    @Test
+    public void testUnknownFieldsAreSkipped() {
+        String json = "{\"id\":42,\"type\":\"MESSAGE\",\"meta\":{\"a\":[1,2,{\"b\":\"}\"}]},"
+                + "\"flag\":true,\"username\":\"User\",\"extra\":null,\"content\":\"Hi\"}";
+        Message decoded = MessageCodec.decode(json);
+
+        assertNotNull(decoded);
+        assertEquals(Message.MessageType.MESSAGE, decoded.getType());
+        assertEquals("User", decoded.getUsername());
+        assertEquals("Hi", decoded.getContent());
+    }
+
+    @Test
+    public void testMissingFields() {
+        Message decoded = MessageCodec.decode("{\"type\":\"MESSAGE\"}");
+
+        assertNotNull(decoded);
+        assertNull(decoded.getUsername());
+        assertNull(decoded.getContent());
+        assertNotNull("Timestamp defaults to now", decoded.getTimestamp());
+    }
+
+    @Test
+    public void testUnknownTypeIsNull() {
+        Message decoded = MessageCodec.decode("{\"type\":\"SOMETHING_NEW\",\"content\":\"x\"}");
+        assertNotNull(decoded);
+        assertNull(decoded.getType());
+    }
+
+    @Test
+    public void testMalformedJson() {
+        assertNull(MessageCodec.decode(""));
+        assertNull(MessageCodec.decode("   "));
+        assertNull(MessageCodec.decode("not json"));
+        assertNull(MessageCodec.decode("{\"type\":\"MESSAGE\""));
+        assertNull(MessageCodec.decode("{\"type\":\"MESSAGE\"} trailing"));
+        assertNull(MessageCodec.decode("{\"content\":\"bad \\x escape\"}"));
+        assertNull(MessageCodec.decode("{\"type\":42}"));
+    }
+}
@@ -0,0 +1,146 @@
+package com.chat.server;
+
+import com.chat.model.BinaryCodec;
+import com.chat.model.FrameDecoder;
+import com.chat.model.Message;
+import com.chat.util.ChatLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ClientHandlerConnectTest {
+
+    private final File logFile = new File("test_logs/connect_test.log");
+    private ChatLogger logger;
+    private ServerContext context;
+    private ServerSocket server;
+
+    @Before
+    public void setUp() throws Exception {
+        logger = new ChatLogger(logFile.getPath());
+        context = new ServerContext(TestContexts.lightweightConfig(), logger, new ClientPool(), null);
+        server = new ServerSocket(0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+        context.shutdown();
+        logger.close();
+        logFile.delete();
+    }
+
+    @Test
+    public void testBinaryAckComesFirstDuringPresenceBroadcasts() throws Exception {
+        // Рассылки PRESENCE идут непрерывно, пока клиенты подключаются
+        Thread presence = new Thread(() -> {
+            Roster roster = context.getRoster();
+            for (int i = 0; !Thread.currentThread().isInterrupted(); i++) {
+                roster.userJoined("bot" + (i % 50));
+                roster.userLeft("bot" + ((i + 25) % 50));
+            }
+        });
+        presence.setDaemon(true);
+        presence.start();
+        try {
+            for (int i = 0; i < 20; i++) {
+                Message connect = new Message(Message.MessageType.CONNECT, "user" + i, "");
+                connect.setProtocol(BinaryCodec.PROTOCOL);
+                try (Socket client = connect(connect)) {
+                    List<Message> replies = readUntilUserList(client, true);
+                    Message ack = replies.get(0);
+                    assertEquals(Message.MessageType.SYSTEM, ack.getType());
+                    assertEquals(BinaryCodec.PROTOCOL, ack.getProtocol());
+                    for (Message reply : replies) {
+                        assertEquals("SERVER", reply.getUsername());
+                    }
+                }
+            }
+        } finally {
+            presence.interrupt();
+            presence.join(2000);
+        }
+    }
+
+    @Test
+    public void testTakenUsernameIsRejectedAndClosed() throws Exception {
+        try (Socket first = connect(new Message(Message.MessageType.CONNECT, "alice", ""))) {
+            readUntilUserList(first, false);
+
+            try (Socket second = connect(new Message(Message.MessageType.CONNECT, "alice", ""))) {
+                FrameDecoder decoder = new FrameDecoder();
+                List<Message> replies = readAll(second, decoder);
+                assertEquals(1, replies.size());
+                assertEquals(Message.MessageType.SYSTEM, replies.get(0).getType());
+                assertEquals("Username alice is already taken", replies.get(0).getContent());
+            }
+            // Первое подключение имя не потеряло
+            assertTrue(context.getClientPool().hasClient("alice"));
+        }
+    }
+
+    private Socket connect(Message connect) throws Exception {
+        Socket client = new Socket("localhost", server.getLocalPort());
+        client.setSoTimeout(5000);
+        Thread reader = new Thread(new ClientHandler(server.accept(), context));
+        reader.setDaemon(true);
+        reader.start();
+
+        OutputStream out = client.getOutputStream();
+        out.write((connect.toJson() + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        return client;
+    }
+
+    //Читать ответы до первой страницы списка пользователей; binary - после первого ответа
+    //поток переключается на двоичные кадры, как у ChatClient
+
+    private static List<Message> readUntilUserList(Socket client, boolean binary) throws Exception {
+        FrameDecoder decoder = new FrameDecoder();
+        List<Message> replies = new ArrayList<>();
+        InputStream in = client.getInputStream();
+        byte[] bytes = new byte[64 * 1024];
+        while (true) {
+            int read = in.read(bytes);
+            assertTrue("Connection closed before USER_LIST", read > 0);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, read);
+            Message message;
+            while ((message = decoder.decode(buffer)) != null) {
+                replies.add(message);
+                if (binary && replies.size() == 1) {
+                    decoder.setBinary(true);
+                }
+                if (message.getType() == Message.MessageType.USER_LIST) {
+                    return replies;
+                }
+            }
+        }
+    }
+
+    private static List<Message> readAll(Socket client, FrameDecoder decoder) throws Exception {
+        List<Message> replies = new ArrayList<>();
+        InputStream in = client.getInputStream();
+        byte[] bytes = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(bytes)) > 0) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, read);
+            Message message;
+            while ((message = decoder.decode(buffer)) != null) {
+                replies.add(message);
+            }
+        }
+        return replies;
+    }
+}
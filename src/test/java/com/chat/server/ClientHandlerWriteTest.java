@@ -0,0 +1,96 @@
+package com.chat.server;
+
+import com.chat.model.Message;
+import com.chat.util.ChatLogger;
+import com.chat.util.ConfigLoader;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.*;
+
+public class ClientHandlerWriteTest {
+
+    private final File logFile = new File("test_logs/write_test.log");
+    private ChatLogger logger;
+
+    @After
+    public void tearDown() {
+        if (logger != null) {
+            logger.close();
+        }
+        logFile.delete();
+    }
+
+    @Test
+    public void testQueuedFramesAreWrittenTogether() throws Exception {
+        // Писатель запускаем вручную, чтобы кадры успели накопиться в очереди
+        Queue<Runnable> writerTasks = new ConcurrentLinkedQueue<>();
+        logger = new ChatLogger(logFile.getPath());
+        ServerContext context = new ServerContext(new ConfigLoader(), logger, new ClientPool(), writerTasks::add);
+        ServerMetrics metrics = context.getMetrics();
+
+        try (ServerSocket server = new ServerSocket(0);
+             Socket client = new Socket("localhost", server.getLocalPort());
+             Socket accepted = server.accept()) {
+            ClientHandler handler = new ClientHandler(accepted, context);
+            Thread reader = new Thread(handler);
+            reader.setDaemon(true);
+            reader.start();
+
+            OutputStream clientOut = client.getOutputStream();
+            clientOut.write((new Message(Message.MessageType.CONNECT, "Writer", "hi").toJson() + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            clientOut.flush();
+
+            // Ответ на CONNECT: соединение готово к записи; ждем, пока обработка CONNECT закончится
+            long deadline = System.currentTimeMillis() + 5000;
+            while (writerTasks.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            do {
+                runAll(writerTasks);
+                Thread.sleep(200);
+            } while (!writerTasks.isEmpty());
+            long writesBefore = metrics.getSocketWrites();
+            long framesBefore = metrics.getFramesWritten();
+
+            for (int i = 0; i < 10; i++) {
+                handler.sendMessage(new Message(Message.MessageType.MESSAGE, "Other", "message " + i));
+            }
+            assertEquals("One writer task for all frames", 1, writerTasks.size());
+            runAll(writerTasks);
+
+            assertEquals(1, metrics.getSocketWrites() - writesBefore);
+            assertEquals(10, metrics.getFramesWritten() - framesBefore);
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+            int received = 0;
+            String line;
+            while (received < 10 && (line = in.readLine()) != null) {
+                Message message = Message.fromJson(line);
+                if (message.getType() == Message.MessageType.MESSAGE) {
+                    assertEquals("message " + received, message.getContent());
+                    received++;
+                }
+            }
+            assertEquals(10, received);
+        }
+    }
+
+    private static void runAll(Queue<Runnable> tasks) {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+}
@@ -82,6 +82,54 @@ public class ClientPoolTest {
         clientPool.broadcastMessage(msg);
     }
     
+    @Test
+    public void testBroadcastEncodesOnce() {
+        RecordingClientHandler handler1 = new RecordingClientHandler();
+        RecordingClientHandler handler2 = new RecordingClientHandler();
+        clientPool.addClient("User1", handler1);
+        clientPool.addClient("User2", handler2);
+
+        clientPool.broadcastMessage(new Message(
+            Message.MessageType.MESSAGE,
+            "User1",
+            "Hello everyone"
+        ));
+
+        // Оба получателя должны получить один и тот же закодированный кадр
+        assertNotNull(handler1.lastFrame);
+        assertSame(handler1.lastFrame, handler2.lastFrame);
+    }
+
+    @Test
+    public void testDuplicateUsernameIsRejected() {
+        assertTrue(clientPool.addClient("User1", mockHandler1));
+        assertFalse(clientPool.addClient("User1", mockHandler2));
+        assertSame(mockHandler1, clientPool.getClient("User1"));
+
+        // Отклоненный обработчик не может освободить чужое имя
+        assertFalse(clientPool.removeClient("User1", mockHandler2));
+        assertTrue(clientPool.hasClient("User1"));
+        assertTrue(clientPool.removeClient("User1", mockHandler1));
+        assertFalse(clientPool.hasClient("User1"));
+    }
+
+    @Test
+    public void testSnapshotFollowsMembership() {
+        clientPool.addClient("User1", mockHandler1);
+        ClientHandler[] first = clientPool.snapshot();
+        assertEquals(1, first.length);
+        // Без изменений состава рассылки используют тот же массив
+        assertSame(first, clientPool.snapshot());
+
+        clientPool.addClient("User2", mockHandler2);
+        assertEquals(2, clientPool.snapshot().length);
+
+        clientPool.removeClient("User1");
+        ClientHandler[] last = clientPool.snapshot();
+        assertEquals(1, last.length);
+        assertSame(mockHandler2, last[0]);
+    }
+
     @Test
     public void testClear() {
         clientPool.addClient("User1", mockHandler1);
@@ -93,7 +141,7 @@ public class ClientPoolTest {
 
     private static class MockClientHandler extends ClientHandler {
         public MockClientHandler() {
-            super(null, null, null);
+            super(null, TestContexts.LIGHTWEIGHT);
         }
         
         @Override
@@ -101,4 +149,13 @@ public class ClientPoolTest {
             return true;
         }
     }
+
+    private static class RecordingClientHandler extends MockClientHandler {
+        private Frame lastFrame;
+
+        @Override
+        public void sendFrame(Frame frame) {
+            lastFrame = frame;
+        }
+    }
 }
\ No newline at end of file
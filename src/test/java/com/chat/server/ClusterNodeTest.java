@@ -0,0 +1,178 @@
+package com.chat.server;
+
+import com.chat.model.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class ClusterNodeTest {
+
+    private Node first;
+    private Node second;
+
+    @Before
+    public void setUp() throws Exception {
+        // Два узла на loopback: каждый подключается к другому
+        first = new Node("first");
+        second = new Node("second");
+        first.cluster.addPeer(new InetSocketAddress("127.0.0.1", second.cluster.getLocalPort()));
+        second.cluster.addPeer(new InetSocketAddress("127.0.0.1", first.cluster.getLocalPort()));
+        assertTrue(waitFor(() -> first.cluster.getConnectedNodes() == 1 && second.cluster.getConnectedNodes() == 1));
+    }
+
+    @After
+    public void tearDown() {
+        first.cluster.shutdown();
+        second.cluster.shutdown();
+    }
+
+    @Test
+    public void testRoomMessageIsRelayed() throws Exception {
+        RecordingClientHandler member = new RecordingClientHandler();
+        second.rooms.join(RoomRegistry.DEFAULT_ROOM, member);
+
+        first.cluster.relay(Frame.of(new Message(Message.MessageType.MESSAGE, "alice", "Hello from first")));
+
+        assertTrue(waitFor(() -> !member.frames.isEmpty()));
+        Message received = member.frames.get(0).getMessage();
+        assertEquals("alice", received.getUsername());
+        assertEquals("Hello from first", received.getContent());
+        assertEquals(1, second.rooms.getRoom(RoomRegistry.DEFAULT_ROOM).getRecentHistory().size());
+    }
+
+    @Test
+    public void testPresenceIsMerged() throws Exception {
+        first.cluster.userJoined("alice");
+        second.cluster.userJoined("bob");
+
+        assertTrue(waitFor(() -> first.roster.getSnapshot().contains("bob")
+                && second.roster.getSnapshot().contains("alice")));
+
+        first.cluster.userLeft("alice");
+        assertTrue(waitFor(() -> !second.roster.getSnapshot().contains("alice")));
+    }
+
+    @Test
+    public void testFailedNodeUsersAreDropped() throws Exception {
+        first.cluster.userJoined("alice");
+        assertTrue(waitFor(() -> second.roster.getSnapshot().contains("alice")));
+
+        first.cluster.shutdown();
+
+        assertTrue(waitFor(() -> !second.roster.getSnapshot().contains("alice")));
+        assertEquals(0, second.cluster.getConnectedNodes());
+    }
+
+    @Test
+    public void testReconnectedNodeSendsFullUserList() throws Exception {
+        first.cluster.userJoined("alice");
+        assertTrue(waitFor(() -> second.roster.getSnapshot().contains("alice")));
+
+        // Второй узел перезапущен на том же порту: первый переподключается и присылает список целиком
+        int port = second.cluster.getLocalPort();
+        second.cluster.shutdown();
+        second = new Node("second", port);
+
+        assertTrue(waitFor(() -> second.roster.getSnapshot().contains("alice")));
+    }
+
+    @Test
+    public void testBadFrameDoesNotDropLink() throws Exception {
+        try (Socket raw = new Socket("127.0.0.1", second.cluster.getLocalPort())) {
+            OutputStream out = raw.getOutputStream();
+            out.write((new Message(Message.MessageType.CONNECT, "raw", null).toJson() + "\n"
+                    + "{\"username\":\"raw\",\"content\":\"no type\"}\n"
+                    + new Message(Message.MessageType.PRESENCE, "raw", "+carol").toJson() + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            // Кадр без типа пропущен, следующий за ним обработан
+            assertTrue(waitFor(() -> second.roster.getSnapshot().contains("carol")));
+            assertEquals(2, second.cluster.getConnectedNodes());
+        }
+    }
+
+    @Test
+    public void testWrongSecretIsRejected() throws Exception {
+        RoomRegistry rooms = new RoomRegistry(10, 0, 10, 0, 0);
+        Roster roster = new Roster(new ClientPool(), 0, 100);
+        ClusterNode guarded = new ClusterNode("guarded", "127.0.0.1", 0, "right", 2000, rooms, roster, null);
+        ClusterNode intruder = new ClusterNode("intruder", null, 0, "wrong", 2000,
+                new RoomRegistry(10, 0, 10, 0, 0), new Roster(new ClientPool(), 0, 100), null);
+        ClusterNode friend = new ClusterNode("friend", null, 0, "right", 2000,
+                new RoomRegistry(10, 0, 10, 0, 0), new Roster(new ClientPool(), 0, 100), null);
+        guarded.start();
+        intruder.start();
+        friend.start();
+        try {
+            InetSocketAddress address = new InetSocketAddress("127.0.0.1", guarded.getLocalPort());
+            intruder.addPeer(address);
+            friend.addPeer(address);
+
+            assertTrue(waitFor(() -> guarded.getConnectedNodes() == 1));
+            friend.userJoined("dave");
+            intruder.userJoined("mallory");
+            assertTrue(waitFor(() -> roster.getSnapshot().contains("dave")));
+            assertFalse(roster.getSnapshot().contains("mallory"));
+            assertEquals(1, guarded.getConnectedNodes());
+        } finally {
+            intruder.shutdown();
+            friend.shutdown();
+            guarded.shutdown();
+        }
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return condition.getAsBoolean();
+    }
+
+    private static class Node {
+        final RoomRegistry rooms = new RoomRegistry(10, 0, 10, 0, 0);
+        final Roster roster = new Roster(new ClientPool(), 0, 100);
+        final ClusterNode cluster;
+
+        Node(String id) throws Exception {
+            this(id, 0);
+        }
+
+        Node(String id, int port) throws Exception {
+            cluster = new ClusterNode(id, port, 2000, rooms, roster, null);
+            cluster.start();
+        }
+    }
+
+    private static class RecordingClientHandler extends ClientHandler {
+        private final List<Frame> frames = new CopyOnWriteArrayList<>();
+
+        RecordingClientHandler() {
+            super(null, TestContexts.LIGHTWEIGHT);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public void sendFrame(Frame frame) {
+            frames.add(frame);
+        }
+    }
+}
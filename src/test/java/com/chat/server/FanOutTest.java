@@ -0,0 +1,73 @@
+package com.chat.server;
+
+import com.chat.model.Message;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FanOutTest {
+
+    private final FanOut fanOut = new FanOut(100, 4);
+    private final ServerContext context = TestContexts.LIGHTWEIGHT;
+
+    @After
+    public void tearDown() {
+        fanOut.shutdown();
+    }
+
+    @Test
+    public void testParallelSendKeepsOrderForEveryRecipient() {
+        RecordingClientHandler[] recipients = new RecordingClientHandler[5 * FanOut.CHUNK_SIZE];
+        for (int i = 0; i < recipients.length; i++) {
+            recipients[i] = new RecordingClientHandler(context);
+        }
+        Frame first = Frame.of(new Message(Message.MessageType.MESSAGE, "alice", "first"));
+        Frame second = Frame.of(new Message(Message.MessageType.MESSAGE, "alice", "second"));
+
+        assertTrue(fanOut.isParallel());
+        assertEquals(recipients.length, fanOut.send(recipients, first));
+        assertEquals(recipients.length, fanOut.send(recipients, second));
+
+        for (RecordingClientHandler recipient : recipients) {
+            assertEquals(2, recipient.frames.size());
+            assertSame(first, recipient.frames.get(0));
+            assertSame(second, recipient.frames.get(1));
+        }
+    }
+
+    @Test
+    public void testDisconnectedRecipientsAreSkipped() {
+        RecordingClientHandler[] recipients = new RecordingClientHandler[3];
+        for (int i = 0; i < recipients.length; i++) {
+            recipients[i] = new RecordingClientHandler(context);
+        }
+        recipients[1].connected = false;
+
+        assertEquals(2, fanOut.send(recipients, Frame.of(new Message(Message.MessageType.MESSAGE, "alice", "hi"))));
+        assertTrue(recipients[1].frames.isEmpty());
+    }
+
+    private static class RecordingClientHandler extends ClientHandler {
+        // Кусок массива обходит один поток, а invoke() публикует результат вызывающему
+        private final List<Frame> frames = new ArrayList<>();
+        private boolean connected = true;
+
+        RecordingClientHandler(ServerContext context) {
+            super(null, context);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void sendFrame(Frame frame) {
+            frames.add(frame);
+        }
+    }
+}
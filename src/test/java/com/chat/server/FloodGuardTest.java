@@ -0,0 +1,71 @@
+package com.chat.server;
+
+import com.chat.util.TokenBucket;
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.*;
+
+public class FloodGuardTest {
+
+    @Test
+    public void testAddressBucketIsSharedUntilLastRelease() throws Exception {
+        FloodGuard guard = new FloodGuard(10, 10, 10, 2, 0);
+        InetAddress address = InetAddress.getByName("127.0.0.1");
+
+        TokenBucket first = guard.acquireAddress(address);
+        TokenBucket second = guard.acquireAddress(address);
+        assertSame(first, second);
+
+        // Лимит адреса общий для всех его подключений
+        long now = System.nanoTime();
+        assertTrue(first.tryAcquire(now));
+        assertTrue(second.tryAcquire(now));
+        assertFalse(first.tryAcquire(now));
+
+        guard.releaseAddress(address);
+        assertEquals(1, guard.getTrackedAddresses());
+        guard.releaseAddress(address);
+        assertEquals(0, guard.getTrackedAddresses());
+    }
+
+    @Test
+    public void testRejectedMessageSpendsNoTokens() throws Exception {
+        FloodGuard guard = new FloodGuard(1, 4, 10, 2, 0);
+        InetAddress address = InetAddress.getByName("127.0.0.1");
+        TokenBucket user = guard.newUserBucket();
+        TokenBucket neighbour = guard.newUserBucket();
+        TokenBucket shared = guard.acquireAddress(address);
+        long now = System.nanoTime();
+
+        // Сосед исчерпал ведро адреса: отказы адреса не тратят личный лимит пользователя
+        assertTrue(FloodGuard.tryAcquire(neighbour, shared, now));
+        assertTrue(FloodGuard.tryAcquire(neighbour, shared, now));
+        for (int i = 0; i < 5; i++) {
+            assertFalse(FloodGuard.tryAcquire(user, shared, now));
+        }
+        now += 1_000_000_000L;
+        assertTrue(FloodGuard.tryAcquire(user, shared, now));
+        assertTrue(FloodGuard.tryAcquire(user, shared, now));
+
+        // Отказ ведра пользователя возвращает токен адреса
+        TokenBucket exhausted = guard.newUserBucket();
+        for (int i = 0; i < 4; i++) {
+            exhausted.tryAcquire(now);
+        }
+        now += 1_000_000_000L;
+        assertTrue(FloodGuard.tryAcquire(exhausted, shared, now));
+        assertFalse(FloodGuard.tryAcquire(exhausted, shared, now));
+        assertTrue(FloodGuard.tryAcquire(neighbour, shared, now));
+    }
+
+    @Test
+    public void testZeroRateDisablesLimits() throws Exception {
+        FloodGuard guard = new FloodGuard(0, 10, 0, 10, 0);
+
+        assertNull(guard.newUserBucket());
+        assertNull(guard.acquireAddress(InetAddress.getByName("127.0.0.1")));
+        assertEquals(0, guard.getTrackedAddresses());
+    }
+}
@@ -0,0 +1,92 @@
+package com.chat.server;
+
+import com.chat.util.ConfigLoader;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NioEventLoopTest {
+
+    private final List<NioEventLoop> loops = new ArrayList<>();
+    private final List<Socket> clients = new ArrayList<>();
+
+    @After
+    public void tearDown() throws Exception {
+        for (Socket client : clients) {
+            client.close();
+        }
+        for (NioEventLoop loop : loops) {
+            loop.shutdown();
+            loop.awaitTermination(2000);
+        }
+    }
+
+    @Test
+    public void testLoopsAcceptOnSharedPort() throws Exception {
+        ServerSocketChannel probe = ServerSocketChannel.open();
+        boolean supported = probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        probe.close();
+        Assume.assumeTrue("SO_REUSEPORT is not supported", supported);
+
+        ServerContext context = new ServerContext(new ConfigLoader(), null, new ClientPool(), null);
+        int port = 0;
+        for (int i = 0; i < 2; i++) {
+            NioEventLoop loop = new NioEventLoop("TestLoop-" + i);
+            loop.start();
+            loops.add(loop);
+
+            // Второй канал садится на порт первого
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            channel.bind(new InetSocketAddress("127.0.0.1", port));
+            port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+            loop.listen(channel, (accepted, owner) -> new NioClientHandler(accepted, owner, context));
+        }
+
+        for (int i = 0; i < 20; i++) {
+            clients.add(new Socket("127.0.0.1", port));
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (totalConnections() < 20 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(20, totalConnections());
+    }
+
+    @Test
+    public void testClosedChannelIsNotCounted() throws Exception {
+        NioEventLoop loop = new NioEventLoop("TestLoop");
+        loop.start();
+        loops.add(loop);
+
+        // Клиент ушел раньше, чем цикл успел зарегистрировать канал
+        SocketChannel channel = SocketChannel.open();
+        channel.close();
+        loop.register(channel, new NioClientHandler(channel, loop, TestContexts.LIGHTWEIGHT));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (loop.getConnectionCount() != 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, loop.getConnectionCount());
+    }
+
+    private int totalConnections() {
+        int total = 0;
+        for (NioEventLoop loop : loops) {
+            total += loop.getConnectionCount();
+        }
+        return total;
+    }
+}
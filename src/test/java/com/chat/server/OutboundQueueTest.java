@@ -0,0 +1,123 @@
+package com.chat.server;
+
+import com.chat.model.Message;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class OutboundQueueTest {
+
+    private static ByteBuffer frame(int id) {
+        return ByteBuffer.wrap(new byte[]{(byte) id});
+    }
+
+    @Test
+    public void testOfferAndPoll() {
+        OutboundQueue queue = new OutboundQueue(4, OutboundQueue.OverflowPolicy.DROP_NEWEST);
+        assertTrue(queue.isEmpty());
+
+        queue.offer(frame(1));
+        queue.offer(frame(2));
+        assertEquals(2, queue.size());
+
+        assertEquals(1, queue.poll().get(0));
+        assertEquals(2, queue.poll().get(0));
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testDropNewest() {
+        OutboundQueue queue = new OutboundQueue(2, OutboundQueue.OverflowPolicy.DROP_NEWEST);
+        queue.offer(frame(1));
+        queue.offer(frame(2));
+        assertTrue("Drop policy should not disconnect", queue.offer(frame(3)));
+
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(1, queue.poll().get(0));
+        assertEquals(2, queue.poll().get(0));
+    }
+
+    @Test
+    public void testDropOldest() {
+        OutboundQueue queue = new OutboundQueue(2, OutboundQueue.OverflowPolicy.DROP_OLDEST);
+        queue.offer(frame(1));
+        queue.offer(frame(2));
+        assertTrue(queue.offer(frame(3)));
+
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(2, queue.poll().get(0));
+        assertEquals(3, queue.poll().get(0));
+    }
+
+    @Test
+    public void testDisconnect() {
+        OutboundQueue queue = new OutboundQueue(1, OutboundQueue.OverflowPolicy.DISCONNECT);
+        assertTrue(queue.offer(frame(1)));
+        assertFalse("Overflow should request disconnect", queue.offer(frame(2)));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testControlFramesGoFirst() {
+        OutboundQueue queue = new OutboundQueue(4, OutboundQueue.OverflowPolicy.DROP_NEWEST);
+        queue.offer(frame(1));
+        queue.offer(frame(2));
+        queue.offer(frame(3), true);
+
+        assertEquals(3, queue.poll().get(0));
+        assertEquals(1, queue.poll().get(0));
+        assertEquals(2, queue.poll().get(0));
+    }
+
+    @Test
+    public void testChatIsShedBeforeControl() {
+        // Даже при политике DISCONNECT служебный кадр вытесняет чат, а не отключает клиента
+        OutboundQueue queue = new OutboundQueue(2, OutboundQueue.OverflowPolicy.DISCONNECT);
+        queue.offer(frame(1));
+        queue.offer(frame(2));
+        assertTrue(queue.offer(frame(3), true));
+
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(3, queue.poll().get(0));
+        assertEquals(2, queue.poll().get(0));
+    }
+
+    @Test
+    public void testChatIsDroppedWhenControlFillsQueue() {
+        OutboundQueue queue = new OutboundQueue(2, OutboundQueue.OverflowPolicy.DROP_OLDEST);
+        queue.offer(frame(1), true);
+        queue.offer(frame(2), true);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.offer(frame(3)));
+        }
+
+        assertEquals(2, queue.size());
+        assertEquals(10, queue.getDroppedCount());
+        assertEquals(1, queue.poll().get(0));
+        assertEquals(2, queue.poll().get(0));
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testFrameLaneFollowsMessageType() {
+        assertTrue(Frame.of(new Message(Message.MessageType.PING, "SERVER", "")).isControl());
+        assertTrue(Frame.of(new Message(Message.MessageType.SYSTEM, "SERVER", "notice")).isControl());
+        assertFalse(Frame.of(new Message(Message.MessageType.MESSAGE, "alice", "hi")).isControl());
+    }
+
+    @Test
+    public void testParsePolicy() {
+        assertEquals(OutboundQueue.OverflowPolicy.DROP_OLDEST,
+                OutboundQueue.OverflowPolicy.parse("drop-oldest", OutboundQueue.OverflowPolicy.DISCONNECT));
+        assertEquals(OutboundQueue.OverflowPolicy.DISCONNECT,
+                OutboundQueue.OverflowPolicy.parse("disconnect", OutboundQueue.OverflowPolicy.DROP_OLDEST));
+        assertEquals(OutboundQueue.OverflowPolicy.DROP_NEWEST,
+                OutboundQueue.OverflowPolicy.parse("unknown", OutboundQueue.OverflowPolicy.DROP_NEWEST));
+    }
+}
@@ -0,0 +1,84 @@
+package com.chat.server;
+
+import com.chat.model.Message;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class RecentHistoryTest {
+
+    @Test
+    public void testEmptyRingHasNoBacklog() {
+        RecentHistory recent = new RecentHistory(10, 0, 0);
+        assertNull(recent.backlog());
+    }
+
+    @Test
+    public void testEvictByCount() {
+        RecentHistory recent = new RecentHistory(3, 0, 0);
+        for (int i = 0; i < 5; i++) {
+            recent.add(frame(i), 1000);
+        }
+
+        assertEquals(3, recent.size());
+        String backlog = text(recent.backlog(1000));
+        assertFalse(backlog.contains("Message 1\""));
+        assertTrue(backlog.indexOf("Message 2") < backlog.indexOf("Message 3"));
+        assertTrue(backlog.indexOf("Message 3") < backlog.indexOf("Message 4"));
+        assertEquals(3, backlog.split("\n").length);
+    }
+
+    @Test
+    public void testEvictByBytes() {
+        int frameSize = frame(0).jsonBuffer().remaining();
+        RecentHistory recent = new RecentHistory(100, frameSize * 2L, 0);
+        for (int i = 0; i < 5; i++) {
+            recent.add(frame(i), 1000);
+        }
+
+        assertEquals(2, recent.size());
+        assertTrue(recent.getTotalBytes() <= frameSize * 2L);
+    }
+
+    @Test
+    public void testEvictByAge() {
+        RecentHistory recent = new RecentHistory(100, 0, 1000);
+        recent.add(frame(0), 1000);
+        recent.add(frame(1), 1500);
+
+        assertNotNull(recent.backlog(1500));
+        assertEquals(2, recent.size());
+
+        assertNotNull(recent.backlog(2200));
+        assertEquals(1, recent.size());
+
+        assertNull(recent.backlog(3000));
+        assertEquals(0, recent.size());
+    }
+
+    @Test
+    public void testBacklogIsSharedUntilChanged() {
+        RecentHistory recent = new RecentHistory(10, 0, 0);
+        recent.add(frame(0), 1000);
+
+        Frame first = recent.backlog(1000);
+        assertSame(first, recent.backlog(1000));
+
+        recent.add(frame(1), 1000);
+        assertNotSame(first, recent.backlog(1000));
+    }
+
+    private static Frame frame(int i) {
+        return Frame.of(new Message(Message.MessageType.MESSAGE, "alice", "Message " + i, "2026-01-11 23:10:00"));
+    }
+
+    private static String text(Frame frame) {
+        ByteBuffer buffer = frame.jsonBuffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
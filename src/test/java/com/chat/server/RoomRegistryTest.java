@@ -0,0 +1,154 @@
+package com.chat.server;
+
+import com.chat.model.Message;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class RoomRegistryTest {
+
+    private RoomRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new RoomRegistry(2, 2, 10, 0, 0);
+    }
+
+    @Test
+    public void testJoinAndLeave() {
+        ClientHandler client = new RecordingClientHandler();
+
+        assertEquals(RoomRegistry.JoinResult.JOINED, registry.join("java", client));
+        assertEquals(RoomRegistry.JoinResult.ALREADY_MEMBER, registry.join("java", client));
+        assertTrue(client.getRooms().contains("java"));
+        assertEquals(1, registry.getRoom("java").getMemberCount());
+
+        assertTrue(registry.leave("java", client));
+        assertFalse(registry.leave("java", client));
+        assertFalse(client.getRooms().contains("java"));
+    }
+
+    @Test
+    public void testEmptyRoomIsRemovedExceptDefault() {
+        ClientHandler client = new RecordingClientHandler();
+        registry.join(null, client);
+        registry.join("java", client);
+        assertEquals(2, registry.getRoomCount());
+
+        registry.leaveAll(client);
+
+        assertNull(registry.getRoom("java"));
+        assertNotNull(registry.getRoom(RoomRegistry.DEFAULT_ROOM));
+        assertEquals(0, registry.getRoom(null).getMemberCount());
+        assertTrue(client.getRooms().isEmpty());
+    }
+
+    @Test
+    public void testLimits() {
+        ClientHandler first = new RecordingClientHandler();
+        ClientHandler second = new RecordingClientHandler();
+        ClientHandler third = new RecordingClientHandler();
+
+        assertEquals(RoomRegistry.JoinResult.JOINED, registry.join("a", first));
+        assertEquals(RoomRegistry.JoinResult.JOINED, registry.join("b", first));
+        assertEquals(RoomRegistry.JoinResult.TOO_MANY_ROOMS, registry.join("c", first));
+
+        assertEquals(RoomRegistry.JoinResult.JOINED, registry.join("a", second));
+        assertEquals(RoomRegistry.JoinResult.ROOM_FULL, registry.join("a", third));
+        assertEquals(RoomRegistry.JoinResult.INVALID_NAME, registry.join("bad name", third));
+        assertTrue(third.getRooms().isEmpty());
+    }
+
+    @Test
+    public void testBroadcastReachesOnlyMembers() {
+        RecordingClientHandler member = new RecordingClientHandler();
+        RecordingClientHandler other = new RecordingClientHandler();
+        registry.join("java", member);
+        registry.join("kotlin", other);
+
+        Message message = new Message(Message.MessageType.MESSAGE, "User1", "Hello");
+        message.setRoom("java");
+        int recipients = registry.getRoom("java").broadcastFrame(Frame.of(message));
+
+        assertEquals(1, recipients);
+        assertNotNull(member.lastFrame);
+        assertNull(other.lastFrame);
+    }
+
+    @Test
+    public void testJoinDuringPublishDeliversEachMessageOnce() throws Exception {
+        RoomRegistry rooms = new RoomRegistry(10, 0, 10_000, 0, 0);
+        rooms.join("java", new RecordingClientHandler());
+        Room room = rooms.getRoom("java");
+        int messages = 2000;
+
+        // Сообщения рассылаются, пока в комнату входят новые участники
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; i < messages; i++) {
+                Message message = new Message(Message.MessageType.MESSAGE, "alice", Integer.toString(i));
+                message.setRoom("java");
+                room.publish(Frame.of(message));
+            }
+        });
+        List<RecordingClientHandler> joiners = new ArrayList<>();
+        publisher.start();
+        for (int i = 0; i < 200; i++) {
+            RecordingClientHandler joiner = new RecordingClientHandler();
+            joiners.add(joiner);
+            rooms.join("java", joiner);
+            Thread.yield();
+        }
+        publisher.join();
+
+        // Каждый получил все сообщения по одному разу и по порядку: подгрузка, потом вживую
+        for (RecordingClientHandler joiner : joiners) {
+            List<String> contents = joiner.contents();
+            assertEquals(messages, contents.size());
+            for (int i = 0; i < messages; i++) {
+                assertEquals(Integer.toString(i), contents.get(i));
+            }
+        }
+    }
+
+    private static class RecordingClientHandler extends ClientHandler {
+        private Frame lastFrame;
+        private final List<Frame> frames = new CopyOnWriteArrayList<>();
+
+        RecordingClientHandler() {
+            super(null, TestContexts.LIGHTWEIGHT);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public void sendFrame(Frame frame) {
+            lastFrame = frame;
+            frames.add(frame);
+        }
+
+        //Содержимое всех сообщений, включая пакеты подгрузки
+
+        List<String> contents() {
+            List<String> contents = new ArrayList<>();
+            for (Frame frame : frames) {
+                ByteBuffer bytes = frame.jsonBuffer();
+                byte[] json = new byte[bytes.remaining()];
+                bytes.get(json);
+                for (String line : new String(json, StandardCharsets.UTF_8).split("\n")) {
+                    contents.add(Message.fromJson(line).getContent());
+                }
+            }
+            return contents;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.chat.server;
+
+import com.chat.model.Message;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RosterTest {
+
+    @Test
+    public void testImmediatePresence() {
+        ClientPool pool = new ClientPool();
+        RecordingClientHandler watcher = new RecordingClientHandler();
+        pool.addClient("watcher", watcher);
+        Roster roster = new Roster(pool, 0, 100);
+
+        roster.userJoined("bob");
+        roster.userJoined("alice");
+        roster.userLeft("bob");
+
+        assertEquals(3, watcher.frames.size());
+        Message last = watcher.frames.get(2).getMessage();
+        assertEquals(Message.MessageType.PRESENCE, last.getType());
+        assertEquals("-bob", last.getContent());
+        assertEquals(Long.valueOf(3), last.getVersion());
+
+        roster.sendPage(watcher, 0);
+        Message page = watcher.frames.get(3).getMessage();
+        assertEquals(Message.MessageType.USER_LIST, page.getType());
+        assertEquals("Active users: alice", page.getContent());
+        assertEquals(Long.valueOf(3), page.getVersion());
+    }
+
+    @Test
+    public void testChangesAreCoalesced() {
+        ClientPool pool = new ClientPool();
+        RecordingClientHandler watcher = new RecordingClientHandler();
+        pool.addClient("watcher", watcher);
+        // Рассылку вызываем вручную раньше, чем сработает таймер
+        Roster roster = new Roster(pool, 60_000, 100);
+        try {
+            roster.userJoined("a");
+            roster.userJoined("b");
+            roster.userJoined("c");
+            roster.userLeft("b");
+
+            Message presence = roster.flush();
+            assertEquals("+a\n+c", presence.getContent());
+            assertEquals(Long.valueOf(1), presence.getVersion());
+            assertEquals(1, watcher.frames.size());
+            assertNull("Nothing left to send", roster.flush());
+
+            // Вышел и вернулся в пределах одной пачки - изменений нет
+            roster.userLeft("a");
+            roster.userJoined("a");
+            assertNull(roster.flush());
+            assertEquals(1, roster.getSnapshot().getVersion());
+            assertTrue(roster.getSnapshot().contains("a"));
+            assertEquals(2, roster.getSnapshot().size());
+        } finally {
+            roster.shutdown();
+        }
+    }
+
+    @Test
+    public void testPagesAreCachedPerSnapshot() {
+        Roster roster = new Roster(new ClientPool(), 0, 2);
+        for (int i = 0; i < 5; i++) {
+            roster.userJoined("user" + i);
+        }
+        Roster.Snapshot snapshot = roster.getSnapshot();
+
+        assertEquals("Active users (1-2 of 5): user0, user1", snapshot.page(0).getMessage().getContent());
+        assertEquals("Active users (3-4 of 5): user2, user3", snapshot.page(3).getMessage().getContent());
+        assertEquals("Active users (5-5 of 5): user4", snapshot.page(100).getMessage().getContent());
+        assertSame(snapshot.page(0), snapshot.page(1));
+
+        roster.userLeft("user0");
+        assertNotSame(snapshot, roster.getSnapshot());
+        assertEquals("Active users (1-2 of 4): user1, user2",
+                roster.getSnapshot().page(0).getMessage().getContent());
+    }
+
+    private static class RecordingClientHandler extends ClientHandler {
+        private final List<Frame> frames = new ArrayList<>();
+
+        RecordingClientHandler() {
+            super(null, TestContexts.LIGHTWEIGHT);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public void sendFrame(Frame frame) {
+            frames.add(frame);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.chat.server;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class ServerMetricsTest {
+
+    @Test
+    public void testCountersAndHistograms() {
+        ServerMetrics metrics = new ServerMetrics(new ClientPool());
+        metrics.connectionOpened();
+        metrics.connectionOpened();
+        metrics.connectionClosed();
+        metrics.messageReceived();
+        for (int i = 1; i <= 100; i++) {
+            metrics.recordBroadcast(i * 1000L, 10);
+        }
+
+        assertEquals(2, metrics.getConnectionsOpened());
+        assertEquals(1, metrics.getConnectionsClosed());
+        assertEquals(1, metrics.getMessagesReceived());
+        assertEquals(100, metrics.getBroadcasts());
+        assertEquals(1000, metrics.getFramesQueued());
+
+        ServerMetricsMXBean.HistogramStats broadcast = metrics.getBroadcastTime();
+        assertEquals(100, broadcast.getCount());
+        assertEquals(50.0, broadcast.getP50(), 1.0);
+        assertEquals(100.0, broadcast.getMax(), 0.001);
+        assertEquals(0, metrics.getDecodeTime().getCount());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        ServerMetrics metrics = new ServerMetrics(new ClientPool());
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    metrics.messageReceived();
+                    metrics.recordDecode(500);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80000, metrics.getMessagesReceived());
+        assertEquals(80000, metrics.getDecodeTime().getCount());
+    }
+
+    @Test
+    public void testJmxRegistration() throws Exception {
+        ServerMetrics metrics = new ServerMetrics(new ClientPool());
+        metrics.messageReceived();
+        metrics.recordLogWrite(2000);
+        metrics.register();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.chat:type=ServerMetrics");
+            assertEquals(1L, server.getAttribute(name, "MessagesReceived"));
+            assertEquals(0, server.getAttribute(name, "ActiveConnections"));
+
+            CompositeData logWrite = (CompositeData) server.getAttribute(name, "LogWriteTime");
+            assertEquals(1L, logWrite.get("count"));
+        } finally {
+            metrics.unregister();
+        }
+    }
+
+    @Test
+    public void testFormat() {
+        ServerMetrics metrics = new ServerMetrics(new ClientPool());
+        String text = metrics.format();
+        assertTrue(text.contains("connections: active=0"));
+        assertTrue(text.contains("broadcast, us"));
+    }
+}
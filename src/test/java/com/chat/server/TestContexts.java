@@ -0,0 +1,27 @@
+package com.chat.server;
+
+import com.chat.util.ConfigLoader;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//Контексты сервера для тестов: настройки задаются в коде, settings.txt не читается
+
+final class TestContexts {
+
+    //Контекст без фоновых потоков: heartbeat и задержка PRESENCE выключены,
+    //рассылка в вызывающем потоке, кластера нет. Останавливать не нужно
+    static final ServerContext LIGHTWEIGHT = new ServerContext(lightweightConfig(), null, new ClientPool(), null);
+
+    private TestContexts() {
+    }
+
+    static ConfigLoader lightweightConfig() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("heartbeat.interval", "0");
+        properties.put("presence.debounce", "0");
+        properties.put("broadcast.parallel.threads", "1");
+        properties.put("buffer.pool.max", "16");
+        return new ConfigLoader(properties);
+    }
+}
@@ -0,0 +1,185 @@
+package com.chat.server.history;
+
+import com.chat.model.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+public class MessageStoreTest {
+
+    private static final String TEST_DIRECTORY = "./test_history";
+
+    @Before
+    public void setUp() {
+        deleteDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        deleteDirectory();
+    }
+
+    @Test
+    public void testAppendAndRead() throws IOException {
+        MessageStore store = new MessageStore(TEST_DIRECTORY, 1024 * 1024, 128, 0);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, store.append(message(i)));
+        }
+
+        List<HistoryRecord> records = store.read(42, 10);
+        assertEquals(10, records.size());
+        assertEquals(42, records.get(0).getSequence());
+        assertEquals("Message 42", records.get(0).getMessage().getContent());
+        assertEquals("alice", records.get(0).getMessage().getUsername());
+        assertEquals(Message.MessageType.MESSAGE, records.get(0).getMessage().getType());
+        assertEquals(51, records.get(9).getSequence());
+
+        store.close();
+    }
+
+    @Test
+    public void testReadAcrossSegments() throws IOException {
+        MessageStore store = new MessageStore(TEST_DIRECTORY, 512, 64, 0);
+        for (int i = 0; i < 200; i++) {
+            store.append(message(i));
+        }
+
+        assertTrue("Small segment size should produce several segments",
+                new File(TEST_DIRECTORY).list((dir, name) -> name.endsWith(".log")).length > 1);
+
+        List<HistoryRecord> records = store.read(0, 1000);
+        assertEquals(200, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i, records.get(i).getSequence());
+            assertEquals("Message " + i, records.get(i).getMessage().getContent());
+        }
+
+        store.close();
+    }
+
+    @Test
+    public void testReadFromTime() throws IOException {
+        MessageStore store = new MessageStore(TEST_DIRECTORY, 512, 64, 0);
+        for (int i = 0; i < 50; i++) {
+            store.append(message(i));
+        }
+        List<HistoryRecord> all = store.read(0, 50);
+        long middleTime = all.get(25).getTimeMillis();
+
+        List<HistoryRecord> fromTime = store.readFromTime(middleTime, 1000);
+        assertFalse(fromTime.isEmpty());
+        assertTrue(fromTime.get(0).getSequence() <= 25);
+        assertTrue(fromTime.get(0).getTimeMillis() >= middleTime);
+        assertEquals(49, fromTime.get(fromTime.size() - 1).getSequence());
+
+        assertTrue(store.readFromTime(Long.MAX_VALUE, 10).isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void testRecoveryAfterRestart() throws IOException {
+        MessageStore store = new MessageStore(TEST_DIRECTORY, 1024, 64, 0);
+        for (int i = 0; i < 30; i++) {
+            store.append(message(i));
+        }
+        store.close();
+
+        // Имитируем сбой посреди записи: в конце активного сегмента недописанная запись
+        File[] logs = new File(TEST_DIRECTORY).listFiles((dir, name) -> name.endsWith(".log"));
+        java.util.Arrays.sort(logs);
+        File last = logs[logs.length - 1];
+        long validSize = last.length();
+        try (RandomAccessFile file = new RandomAccessFile(last, "rw")) {
+            file.seek(validSize);
+            file.writeInt(100);
+            file.writeInt(12345);
+        }
+
+        MessageStore reopened = new MessageStore(TEST_DIRECTORY, 1024, 64, 0);
+        assertEquals(validSize, last.length());
+        assertEquals(30, reopened.getNextSequence());
+        assertEquals(30, reopened.append(message(30)));
+
+        List<HistoryRecord> records = reopened.read(0, 1000);
+        assertEquals(31, records.size());
+        assertEquals("Message 30", records.get(30).getMessage().getContent());
+        reopened.close();
+    }
+
+    @Test
+    public void testTimeStaysMonotonicAfterRestart() throws IOException {
+        MessageStore store = new MessageStore(TEST_DIRECTORY, 1024 * 1024, 64, 0);
+        for (int i = 0; i < 10; i++) {
+            store.append(message(i));
+        }
+        store.close();
+
+        // Последняя сохраненная запись - из "будущего" (часы после перезапуска отстали)
+        long future = System.currentTimeMillis() + 3_600_000L;
+        File log = new File(TEST_DIRECTORY).listFiles((dir, name) -> name.endsWith(".log"))[0];
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            long position = 0;
+            long last = 0;
+            while (position < file.length()) {
+                last = position;
+                file.seek(position);
+                position += 8 + file.readInt();
+            }
+            file.seek(last);
+            byte[] body = new byte[file.readInt()];
+            file.seek(last + 16);
+            file.writeLong(future);
+            file.seek(last + 8);
+            file.readFully(body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            file.seek(last + 4);
+            file.writeInt((int) crc.getValue());
+        }
+
+        MessageStore reopened = new MessageStore(TEST_DIRECTORY, 1024 * 1024, 64, 0);
+        assertEquals(10, reopened.append(message(10)));
+        List<HistoryRecord> records = reopened.read(0, 1000);
+        assertEquals(11, records.size());
+        assertEquals(future, records.get(9).getTimeMillis());
+        assertTrue(records.get(10).getTimeMillis() >= future);
+        reopened.close();
+    }
+
+    @Test
+    public void testRetentionBySegments() throws IOException {
+        MessageStore store = new MessageStore(TEST_DIRECTORY, 256, 64, 2);
+        for (int i = 0; i < 100; i++) {
+            store.append(message(i));
+        }
+
+        assertTrue(store.getFirstSequence() > 0);
+        List<HistoryRecord> records = store.read(0, 1000);
+        assertEquals(store.getFirstSequence(), records.get(0).getSequence());
+        assertEquals(99, records.get(records.size() - 1).getSequence());
+        store.close();
+    }
+
+    private static Message message(int i) {
+        return new Message(Message.MessageType.MESSAGE, "alice", "Message " + i);
+    }
+
+    private static void deleteDirectory() {
+        File directory = new File(TEST_DIRECTORY);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,52 @@
+package com.chat.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testReleasedBufferIsReused() {
+        BufferPool pool = new BufferPool(true, new int[]{1024, 8192}, 4);
+
+        ByteBuffer buffer = pool.acquire(1000);
+        assertTrue(buffer.isDirect());
+        assertEquals(1024, buffer.capacity());
+
+        buffer.put((byte) 1);
+        pool.release(buffer);
+        ByteBuffer reused = pool.acquire(512);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(1, pool.getAllocatedCount());
+    }
+
+    @Test
+    public void testOversizedAndForeignBuffersAreNotPooled() {
+        BufferPool pool = new BufferPool(false, new int[]{1024}, 4);
+
+        ByteBuffer large = pool.acquire(4096);
+        assertEquals(4096, large.capacity());
+        pool.release(large);
+        pool.release(ByteBuffer.allocate(100));
+        pool.release(ByteBuffer.allocateDirect(1024));
+        assertEquals(0, pool.getPooledCount());
+    }
+
+    @Test
+    public void testPoolKeepsAtMostMaxPerClass() {
+        BufferPool pool = new BufferPool(false, new int[]{1024}, 2);
+
+        ByteBuffer[] buffers = new ByteBuffer[3];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.acquire(1024);
+        }
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        assertEquals(2, pool.getPooledCount());
+    }
+}
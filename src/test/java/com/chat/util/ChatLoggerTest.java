@@ -115,4 +115,54 @@ public class ChatLoggerTest {
         File file = new File(testLogFile);
         assertTrue("Log file should contain all messages", file.length() > 0);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAsyncLogging() throws IOException {
+        ChatLogger asyncLogger = new ChatLogger(testLogFile, 1024, ChatLogger.QueueFullPolicy.BLOCK, 16, 50);
+        for (int i = 0; i < 100; i++) {
+            asyncLogger.log("Async message " + i);
+        }
+        asyncLogger.flush();
+
+        assertEquals("All records should be flushed", 100, countLines(testLogFile));
+
+        asyncLogger.close();
+        asyncLogger.log("After close");
+        assertEquals("Logging after close should still reach the file", 101, countLines(testLogFile));
+    }
+
+    @Test
+    public void testAsyncThreadSafety() throws Exception {
+        ChatLogger asyncLogger = new ChatLogger(testLogFile, 64, ChatLogger.QueueFullPolicy.BLOCK, 8, 10);
+        Thread[] threads = new Thread[5];
+
+        for (int i = 0; i < 5; i++) {
+            final int threadNum = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 200; j++) {
+                    asyncLogger.log("Thread " + threadNum + " Message " + j);
+                }
+            });
+            threads[i].start();
+        }
+
+        for (Thread t : threads) {
+            t.join();
+        }
+        asyncLogger.close();
+
+        // BLOCK не теряет записи даже при маленькой очереди
+        assertEquals(1000, countLines(testLogFile));
+        assertEquals(0, asyncLogger.getDroppedCount());
+    }
+
+    private static int countLines(String path) throws IOException {
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            while (reader.readLine() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,76 @@
+package com.chat.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class HashedWheelTimerTest {
+
+    private final HashedWheelTimer timer = new HashedWheelTimer("TestTimer", 10, 8);
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void testTaskRunsAfterDelay() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        AtomicLong firedAt = new AtomicLong();
+        long start = System.nanoTime();
+
+        HashedWheelTimer.Timeout timeout = timer.schedule(() -> {
+            firedAt.set(System.nanoTime());
+            fired.countDown();
+        }, 50);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue("Fired too early", TimeUnit.NANOSECONDS.toMillis(firedAt.get() - start) >= 40);
+        assertTrue(timeout.isExpired());
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    public void testDelayLongerThanOneRound() throws InterruptedException {
+        // 8 корзин по 10 мс - оборот 80 мс, таймаут ждет несколько оборотов
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.schedule(fired::countDown, 250);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 240);
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        AtomicBoolean cancelledRan = new AtomicBoolean(false);
+        CountDownLatch other = new CountDownLatch(1);
+
+        HashedWheelTimer.Timeout timeout = timer.schedule(() -> cancelledRan.set(true), 30);
+        assertTrue(timeout.cancel());
+        assertFalse("Second cancel has no effect", timeout.cancel());
+        timer.schedule(other::countDown, 60);
+
+        assertTrue(other.await(2, TimeUnit.SECONDS));
+        assertFalse(cancelledRan.get());
+        assertTrue(timeout.isCancelled());
+    }
+
+    @Test
+    public void testManyTimeouts() throws InterruptedException {
+        int count = 50000;
+        CountDownLatch fired = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            timer.schedule(fired::countDown, i % 200);
+        }
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertEquals(0, timer.getPendingCount());
+    }
+}
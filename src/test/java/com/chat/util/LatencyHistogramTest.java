@@ -0,0 +1,83 @@
+package com.chat.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.recordValue(value);
+        }
+
+        assertEquals(100000, histogram.getTotalCount());
+        assertWithinPrecision(50000, histogram.getValueAtPercentile(50));
+        assertWithinPrecision(99000, histogram.getValueAtPercentile(99));
+        assertWithinPrecision(99900, histogram.getValueAtPercentile(99.9));
+        assertEquals(100000, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getMin());
+        assertEquals(50000.5, histogram.getMean(), 0.001);
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram.recordValue(i);
+        }
+        assertEquals(49, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testBucketBoundaries() {
+        for (long value : new long[]{0, 127, 128, 129, 255, 256, 1000003, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue("Value " + value + " must not exceed its bucket",
+                    value <= LatencyHistogram.highestEquivalentValue(index));
+            if (index > 0) {
+                assertTrue("Value " + value + " must be above the previous bucket",
+                        value > LatencyHistogram.highestEquivalentValue(index - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testAddMergesHistograms() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.recordValue(10);
+        second.recordValue(1000);
+        second.recordValue(2000);
+
+        first.add(second);
+        assertEquals(3, first.getTotalCount());
+        assertEquals(10, first.getMin());
+        assertEquals(2000, first.getMax());
+    }
+
+    @Test
+    public void testPercentileDistributionOutput() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.recordValue(value);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        histogram.outputPercentileDistribution(new PrintStream(bytes), 1.0);
+
+        String output = bytes.toString();
+        assertTrue(output.contains("Percentile"));
+        assertTrue(output.contains("Total count"));
+        assertTrue(output.contains("1.000000000000"));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertEquals(expected, actual, expected * 0.016);
+    }
+}
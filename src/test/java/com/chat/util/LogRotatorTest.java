@@ -0,0 +1,89 @@
+package com.chat.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class LogRotatorTest {
+
+    private static final String TEST_DIRECTORY = "./test_rotation_logs";
+    private static final String TEST_LOG_FILE = TEST_DIRECTORY + "/chat.log";
+
+    @Before
+    public void setUp() {
+        deleteDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        deleteDirectory();
+    }
+
+    @Test
+    public void testRotateBySize() throws IOException {
+        ChatLogger logger = new ChatLogger(TEST_LOG_FILE);
+        LogRotator rotator = new LogRotator(TEST_LOG_FILE, 200, 0, 0, 0);
+        logger.setRotator(rotator);
+
+        for (int i = 0; i < 20; i++) {
+            logger.log("Rotation test message number " + i);
+        }
+        logger.close();
+
+        File[] archives = rotator.listArchives();
+        assertTrue("Closed segments should be archived", archives.length > 0);
+        assertTrue("Active file should stay below the limit plus one record",
+                new File(TEST_LOG_FILE).length() < 300);
+
+        // Архив - корректный gzip с исходными строками
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(archives[0]))))) {
+            String line = reader.readLine();
+            assertNotNull(line);
+            assertTrue(line.contains("Rotation test message"));
+        }
+    }
+
+    @Test
+    public void testRetentionByCount() {
+        ChatLogger logger = new ChatLogger(TEST_LOG_FILE, 1024, ChatLogger.QueueFullPolicy.BLOCK, 1, 1);
+        LogRotator rotator = new LogRotator(TEST_LOG_FILE, 100, 0, 2, 0);
+        logger.setRotator(rotator);
+
+        for (int i = 0; i < 50; i++) {
+            logger.log("Retention test message number " + i);
+            logger.flush();
+        }
+        logger.close();
+
+        assertTrue("Only the newest archives should be kept", rotator.listArchives().length <= 2);
+    }
+
+    @Test
+    public void testShouldRotate() {
+        LogRotator bySize = new LogRotator(TEST_LOG_FILE, 1000, 0, 0, 0);
+        assertFalse(bySize.shouldRotate(999, System.currentTimeMillis()));
+        assertTrue(bySize.shouldRotate(1000, System.currentTimeMillis()));
+
+        LogRotator byTime = new LogRotator(TEST_LOG_FILE, 0, 60000, 0, 0);
+        assertFalse(byTime.shouldRotate(10, System.currentTimeMillis()));
+        assertTrue(byTime.shouldRotate(10, System.currentTimeMillis() + 60000));
+        assertFalse("Empty segment is not rotated", byTime.shouldRotate(0, System.currentTimeMillis() + 60000));
+    }
+
+    private static void deleteDirectory() {
+        File directory = new File(TEST_DIRECTORY);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,86 @@
+package com.chat.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void testBurstThenRefill() {
+        TokenBucket bucket = new TokenBucket(10, 5);
+        long now = 0;
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(now));
+        }
+        assertFalse(bucket.tryAcquire(now));
+
+        // 10 сообщений в секунду: через 100 мс доступен ровно один токен
+        now += SECOND / 10;
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+    }
+
+    @Test
+    public void testReleaseReturnsToken() {
+        TokenBucket bucket = new TokenBucket(10, 2);
+        long now = 0;
+
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+
+        bucket.release();
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+    }
+
+    @Test
+    public void testIdleTimeDoesNotAccumulateBeyondBurst() {
+        TokenBucket bucket = new TokenBucket(10, 3);
+        long now = 100 * SECOND;
+
+        int allowed = 0;
+        for (int i = 0; i < 10; i++) {
+            if (bucket.tryAcquire(now)) {
+                allowed++;
+            }
+        }
+        assertEquals(3, allowed);
+    }
+
+    @Test
+    public void testConcurrentAcquireNeverExceedsBurst() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 100);
+        long now = System.nanoTime();
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    if (bucket.tryAcquire(now)) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(100, allowed.get());
+    }
+}